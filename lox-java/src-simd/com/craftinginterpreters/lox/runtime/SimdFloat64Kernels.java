@@ -0,0 +1,130 @@
+package com.craftinginterpreters.lox.runtime;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// The kernels on the Vector API, which process as many elements at once as the widest registers of the machine hold,
+// and finish the elements that don't fill a whole register one at a time.
+//
+// The reductions keep a partial result per lane, which are only combined at the end, so sums and dot products add the
+// elements in a different order than the scalar kernels do, and they can differ from them in the last bits.
+final class SimdFloat64Kernels implements Float64Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "simd (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void add(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < length; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    @Override
+    public void mul(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < length; i++) {
+            a[i] *= b[i];
+        }
+    }
+
+    @Override
+    public void fma(double[] a, double[] b, double[] c, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .fma(DoubleVector.fromArray(SPECIES, b, i), DoubleVector.fromArray(SPECIES, c, i))
+                    .intoArray(a, i);
+        }
+        for (; i < length; i++) {
+            a[i] = Math.fma(a[i], b[i], c[i]);
+        }
+    }
+
+    @Override
+    public void scale(double[] a, double factor, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(factor).intoArray(a, i);
+        }
+        for (; i < length; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int length) {
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, a, i));
+        }
+
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double min(double[] a, int length) {
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            mins = mins.min(DoubleVector.fromArray(SPECIES, a, i));
+        }
+
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            min = Math.min(min, a[i]);
+        }
+
+        return min;
+    }
+
+    @Override
+    public double max(double[] a, int length) {
+        DoubleVector maxes = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            maxes = maxes.max(DoubleVector.fromArray(SPECIES, a, i));
+        }
+
+        double max = maxes.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            max = Math.max(max, a[i]);
+        }
+
+        return max;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        DoubleVector dots = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            dots = DoubleVector.fromArray(SPECIES, a, i).fma(DoubleVector.fromArray(SPECIES, b, i), dots);
+        }
+
+        double dot = dots.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot = Math.fma(a[i], b[i], dot);
+        }
+
+        return dot;
+    }
+}
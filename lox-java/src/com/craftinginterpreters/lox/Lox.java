@@ -6,6 +6,7 @@ import com.craftinginterpreters.lox.lexer.Scanner;
 import com.craftinginterpreters.lox.lexer.Token;
 import com.craftinginterpreters.lox.lexer.TokenType;
 import com.craftinginterpreters.lox.parser.Parser;
+import com.craftinginterpreters.lox.runtime.CallStack;
 import com.craftinginterpreters.lox.runtime.Interpreter;
 import com.craftinginterpreters.lox.runtime.Resolver;
 
@@ -15,24 +16,58 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
+    // Created by main() rather than when the class is loaded, since the launcher of compiled jars and the tools use
+    // this class for its helpers and bring interpreters of their own.
+    private static Interpreter interpreter;
     private static boolean hadError = false;
     private static boolean hadRuntimeError = false;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        interpreter = new Interpreter();
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        while (!arguments.isEmpty() && arguments.getFirst().startsWith("--")) {
+            if (!applyOption(interpreter, arguments.removeFirst())) usage();
+        }
+
+        if (arguments.size() > 1) {
+            usage();
+        } else if (arguments.size() == 1) {
+            runFile(arguments.getFirst());
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--deep-recursion[=<megabytes>]] [script]");
+        System.exit(64);
+    }
+
+    public static boolean applyOption(Interpreter interpreter, String option) {
+        if (option.equals("--deep-recursion")) {
+            interpreter.useCallStack(new CallStack(CallStack.DEFAULT_BUDGET));
+            return true;
+        }
+
+        if (option.startsWith("--deep-recursion=")) {
+            try {
+                long megabytes = Long.parseLong(option.substring("--deep-recursion=".length()));
+                interpreter.useCallStack(new CallStack(megabytes * 1024 * 1024));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
         run(new String(bytes, Charset.defaultCharset()));
@@ -70,6 +105,10 @@ public class Lox {
         // Stop if there was a resolution error.
         if (hadError) return;
 
+        interpret(interpreter, statements);
+    }
+
+    public static void interpret(Interpreter interpreter, List<Stmt> statements) {
         Expr singleExpression = isSingleExpression(statements);
         if (singleExpression != null) {
             interpreter.interpret(singleExpression);
@@ -89,6 +128,14 @@ public class Lox {
         return null;
     }
 
+    public static boolean hadError() {
+        return hadError;
+    }
+
+    public static boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
     public static void error(int line, String message) {
         report(line, "", message);
     }
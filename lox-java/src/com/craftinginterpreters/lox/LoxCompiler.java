@@ -0,0 +1,154 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.lexer.Scanner;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.parser.Parser;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.ProgramImage;
+import com.craftinginterpreters.lox.runtime.Resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.*;
+import java.util.stream.Stream;
+
+public class LoxCompiler {
+
+    // Classes that are only needed to turn source code into a program, and that are left out of the compiled jar.
+    private static final List<String> FRONT_END = Arrays.asList(
+            "com/craftinginterpreters/lox/LoxCompiler",
+            "com/craftinginterpreters/lox/lexer/Scanner",
+            "com/craftinginterpreters/lox/parser/",
+            "com/craftinginterpreters/lox/runtime/Resolver",
+            "com/craftinginterpreters/tool/"
+    );
+
+    // Runtime classes that are compiled on their own, and that might thus be loaded from another directory or jar than
+    // this compiler. They are left out of the jar if they weren't built.
+    private static final List<String> SEPARATE_RUNTIME = Arrays.asList(
+            "com/craftinginterpreters/lox/runtime/SimdFloat64Kernels.class"
+    );
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: jloxc [script] [output jar]");
+            System.exit(64);
+        }
+
+        Path script = Paths.get(args[0]);
+        Path output = args.length == 2 ? Paths.get(args[1]) : defaultOutput(script);
+
+        ProgramImage image = compile(script);
+        if (image == null) System.exit(65);
+
+        writeJar(image, output);
+    }
+
+    private static Path defaultOutput(Path script) {
+        String name = script.getFileName().toString();
+        if (name.endsWith(".lox")) {
+            name = name.substring(0, name.length() - 4);
+        }
+
+        return script.resolveSibling(name + ".jar");
+    }
+
+    private static ProgramImage compile(Path script) throws IOException {
+        byte[] bytes = Files.readAllBytes(script);
+
+        Scanner scanner = new Scanner(new String(bytes, Charset.defaultCharset()));
+        List<Token> tokens = scanner.scanTokens();
+
+        Parser parser = new Parser(tokens);
+        List<Stmt> statements = parser.parse();
+
+        // Stop if there was an error in the parsing.
+        if (Lox.hadError()) return null;
+
+        Interpreter interpreter = new Interpreter();
+        Resolver resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+
+        // Stop if there was a resolution error.
+        if (Lox.hadError()) return null;
+
+        return new ProgramImage(statements, interpreter.resolutions());
+    }
+
+    private static void writeJar(ProgramImage image, Path output) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, LoxLauncher.class.getName());
+
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(output), manifest)) {
+            for (Map.Entry<String, byte[]> runtimeClass : runtimeClasses().entrySet()) {
+                jar.putNextEntry(new JarEntry(runtimeClass.getKey()));
+                jar.write(runtimeClass.getValue());
+                jar.closeEntry();
+            }
+
+            jar.putNextEntry(new JarEntry(ProgramImage.RESOURCE_NAME));
+            image.write(jar);
+            jar.closeEntry();
+        }
+    }
+
+    private static SortedMap<String, byte[]> runtimeClasses() throws IOException {
+        // We copy the classes from wherever this compiler was loaded, which is either a directory or a jar.
+        Path location;
+        try {
+            location = Paths.get(LoxCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Can't locate the Lox runtime classes.", e);
+        }
+
+        SortedMap<String, byte[]> classes = new TreeMap<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = location.relativize(file).toString().replace('\\', '/');
+                    if (isRuntimeClass(name)) {
+                        classes.put(name, Files.readAllBytes(file));
+                    }
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                for (JarEntry entry : Collections.list(jar.entries())) {
+                    if (isRuntimeClass(entry.getName())) {
+                        try (InputStream input = jar.getInputStream(entry)) {
+                            classes.put(entry.getName(), input.readAllBytes());
+                        }
+                    }
+                }
+            }
+        }
+
+        for (String name : SEPARATE_RUNTIME) {
+            if (classes.containsKey(name)) continue;
+
+            try (InputStream input = LoxCompiler.class.getClassLoader().getResourceAsStream(name)) {
+                if (input != null) classes.put(name, input.readAllBytes());
+            }
+        }
+
+        return classes;
+    }
+
+    private static boolean isRuntimeClass(String name) {
+        if (!name.startsWith("com/craftinginterpreters/") || !name.endsWith(".class")) return false;
+
+        for (String prefix : FRONT_END) {
+            if (name.startsWith(prefix)) return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.ProgramImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Entry point of the jars produced by `jloxc`, which runs the program image bundled in the jar. It never touches the
+// Scanner, Parser or Resolver, which are not even part of the jar.
+public class LoxLauncher {
+
+    public static void main(String[] args) throws IOException {
+        ProgramImage image;
+        try (InputStream input = LoxLauncher.class.getClassLoader().getResourceAsStream(ProgramImage.RESOURCE_NAME)) {
+            if (input == null) {
+                System.err.println("No program image found in the classpath.");
+                System.exit(66);
+            }
+
+            image = ProgramImage.read(input);
+        } catch (IOException e) {
+            System.err.println("Can't load the program image: " + e.getMessage());
+            System.exit(65);
+            return;
+        }
+
+        Interpreter interpreter = new Interpreter();
+        for (String option : args) {
+            if (!Lox.applyOption(interpreter, option)) {
+                System.out.println("Usage: java -jar <program.jar> [--deep-recursion[=<megabytes>]]");
+                System.exit(64);
+            }
+        }
+        image.link(interpreter);
+        Lox.interpret(interpreter, image.getStatements());
+
+        if (interpreter.hadRuntimeError()) System.exit(70);
+    }
+}
@@ -1,6 +1,8 @@
 package com.craftinginterpreters.lox.ast;
 
 import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.InlineCache;
+import com.craftinginterpreters.lox.runtime.LoxCallSite;
 
 import java.util.List;
 
@@ -22,6 +24,8 @@ public abstract class Expr {
 
         R visitLiteralExpr(Literal expr);
 
+        R visitInterpolationExpr(Interpolation expr);
+
         R visitLogicalExpr(Logical expr);
 
         R visitSetExpr(Set expr);
@@ -34,6 +38,12 @@ public abstract class Expr {
 
         R visitLambdaExpr(Lambda expr);
 
+        R visitArrayExpr(Array expr);
+
+        R visitSubscriptExpr(Subscript expr);
+
+        R visitSetSubscriptExpr(SetSubscript expr);
+
         R visitVariableExpr(Variable expr);
     }
 
@@ -94,6 +104,8 @@ public abstract class Expr {
         public final Expr callee;
         public final Token paren;
         public final List<Expr> arguments;
+        // Filled in by the interpreter that runs the node.
+        public LoxCallSite callSite;
 
         public Call(Expr callee, Token paren, List<Expr> arguments) {
             this.callee = callee;
@@ -110,6 +122,8 @@ public abstract class Expr {
     public static class Get extends Expr {
         public final Expr object;
         public final Token name;
+        // Filled in by the interpreter that runs the node.
+        public InlineCache inlineCache;
 
         public Get(Expr object, Token name) {
             this.object = object;
@@ -148,6 +162,19 @@ public abstract class Expr {
         }
     }
 
+    public static class Interpolation extends Expr {
+        public final List<Expr> parts;
+
+        public Interpolation(List<Expr> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitInterpolationExpr(this);
+        }
+    }
+
     public static class Logical extends Expr {
         public final Expr left;
         public final Token operator;
@@ -169,6 +196,8 @@ public abstract class Expr {
         public final Expr object;
         public final Token name;
         public final Expr value;
+        // Filled in by the interpreter that runs the node.
+        public InlineCache inlineCache;
 
         public Set(Expr object, Token name, Expr value) {
             this.object = object;
@@ -185,6 +214,8 @@ public abstract class Expr {
     public static class Super extends Expr {
         public final Token keyword;
         public final Token method;
+        // Filled in by the interpreter that runs the node.
+        public InlineCache inlineCache;
 
         public Super(Token keyword, Token method) {
             this.keyword = keyword;
@@ -240,6 +271,57 @@ public abstract class Expr {
         }
     }
 
+    public static class Array extends Expr {
+        public final Token bracket;
+        public final List<Expr> elements;
+
+        public Array(Token bracket, List<Expr> elements) {
+            this.bracket = bracket;
+            this.elements = elements;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitArrayExpr(this);
+        }
+    }
+
+    public static class Subscript extends Expr {
+        public final Expr object;
+        public final Token bracket;
+        public final Expr index;
+
+        public Subscript(Expr object, Token bracket, Expr index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSubscriptExpr(this);
+        }
+    }
+
+    public static class SetSubscript extends Expr {
+        public final Expr object;
+        public final Token bracket;
+        public final Expr index;
+        public final Expr value;
+
+        public SetSubscript(Expr object, Token bracket, Expr index, Expr value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetSubscriptExpr(this);
+        }
+    }
+
     public static class Variable extends Expr {
         public final Token name;
 
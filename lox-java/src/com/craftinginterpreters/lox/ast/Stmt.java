@@ -1,6 +1,7 @@
 package com.craftinginterpreters.lox.ast;
 
 import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.InlineCache;
 
 import java.util.List;
 
@@ -14,12 +15,16 @@ public abstract class Stmt {
 
         R visitExpressionStmt(Expression stmt);
 
+        R visitForInStmt(ForIn stmt);
+
         R visitFunctionStmt(Function stmt);
 
         R visitIfStmt(If stmt);
 
         R visitPrintStmt(Print stmt);
 
+        R visitRecordStmt(Record stmt);
+
         R visitReturnStmt(Return stmt);
 
         R visitBreakStmt(Break stmt);
@@ -72,6 +77,30 @@ public abstract class Stmt {
         }
     }
 
+    public static class ForIn extends Stmt {
+        public final Token name;
+        public final Expr iterable;
+        public final Stmt body;
+        public final Token iterator;
+        public final Token next;
+        // Filled in by the interpreter that runs the node.
+        public InlineCache iteratorCache;
+        public InlineCache nextCache;
+
+        public ForIn(Token name, Expr iterable, Stmt body, Token iterator, Token next) {
+            this.name = name;
+            this.iterable = iterable;
+            this.body = body;
+            this.iterator = iterator;
+            this.next = next;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForInStmt(this);
+        }
+    }
+
     public static class Function extends Stmt {
         public final Token name;
         public final List<Token> params;
@@ -121,9 +150,28 @@ public abstract class Stmt {
         }
     }
 
+    public static class Record extends Stmt {
+        public final Token name;
+        public final List<Token> fields;
+        public final List<Stmt.Function> methods;
+
+        public Record(Token name, List<Token> fields, List<Stmt.Function> methods) {
+            this.name = name;
+            this.fields = fields;
+            this.methods = methods;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitRecordStmt(this);
+        }
+    }
+
     public static class Return extends Stmt {
         public final Token keyword;
         public final Expr value;
+        // Filled in by the resolver.
+        public TailCall tailCall = TailCall.NONE;
 
         public Return(Token keyword, Expr value) {
             this.keyword = keyword;
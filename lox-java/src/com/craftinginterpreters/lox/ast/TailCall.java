@@ -0,0 +1,9 @@
+package com.craftinginterpreters.lox.ast;
+
+// What the resolver found out about a return: whether it returns a call, and if so whether the frame of its function
+// can be reused for the callee, which it can when no closure captured it.
+public enum TailCall {
+    NONE,
+    NEW_FRAME,
+    REUSE_FRAME
+}
@@ -0,0 +1,367 @@
+package com.craftinginterpreters.lox.ast.records;
+
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.InlineCache;
+import com.craftinginterpreters.lox.runtime.LoxCallSite;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Converts between the visitor-based AST and the record-based AST.
+//
+// Every converted node is remembered in both directions, so that converting a node back returns the exact node it
+// came from. This is what allows the two trees to be used interchangeably, for example by keeping the resolution of a
+// classic node valid for the record it was converted to. Records compare structurally, thus all the bookkeeping is
+// done by identity.
+//
+// The records get inline caches and call sites of their own, from the interpreter that converts them, while the
+// classic nodes they are converted back to start without any.
+public class AstConverter implements com.craftinginterpreters.lox.ast.Expr.Visitor<Expr>,
+        com.craftinginterpreters.lox.ast.Stmt.Visitor<Stmt> {
+
+    private final Map<Object, Object> toRecord = new IdentityHashMap<>();
+    private final Map<Object, Object> toClassic = new IdentityHashMap<>();
+    private final Supplier<InlineCache> inlineCaches;
+    private final Function<Token, LoxCallSite> callSites;
+
+    public AstConverter(Supplier<InlineCache> inlineCaches, Function<Token, LoxCallSite> callSites) {
+        this.inlineCaches = inlineCaches;
+        this.callSites = callSites;
+    }
+
+    public Expr toRecord(com.craftinginterpreters.lox.ast.Expr expr) {
+        if (expr == null) return null;
+
+        Expr converted = (Expr) toRecord.get(expr);
+        if (converted == null) {
+            converted = expr.accept(this);
+            remember(expr, converted);
+        }
+
+        return converted;
+    }
+
+    public Stmt toRecord(com.craftinginterpreters.lox.ast.Stmt stmt) {
+        if (stmt == null) return null;
+
+        Stmt converted = (Stmt) toRecord.get(stmt);
+        if (converted == null) {
+            converted = stmt.accept(this);
+            remember(stmt, converted);
+        }
+
+        return converted;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Stmt> toRecords(List<com.craftinginterpreters.lox.ast.Stmt> statements) {
+        List<Stmt> converted = (List<Stmt>) toRecord.get(statements);
+        if (converted == null) {
+            converted = new ArrayList<>(statements.size());
+            for (com.craftinginterpreters.lox.ast.Stmt statement : statements) {
+                converted.add(toRecord(statement));
+            }
+            remember(statements, converted);
+        }
+
+        return converted;
+    }
+
+    public com.craftinginterpreters.lox.ast.Expr toClassic(Expr expr) {
+        if (expr == null) return null;
+
+        com.craftinginterpreters.lox.ast.Expr converted = (com.craftinginterpreters.lox.ast.Expr) toClassic.get(expr);
+        if (converted == null) {
+            converted = convert(expr);
+            remember(converted, expr);
+        }
+
+        return converted;
+    }
+
+    public com.craftinginterpreters.lox.ast.Stmt toClassic(Stmt stmt) {
+        if (stmt == null) return null;
+
+        com.craftinginterpreters.lox.ast.Stmt converted = (com.craftinginterpreters.lox.ast.Stmt) toClassic.get(stmt);
+        if (converted == null) {
+            converted = convert(stmt);
+            remember(converted, stmt);
+        }
+
+        return converted;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<com.craftinginterpreters.lox.ast.Stmt> toClassic(List<Stmt> statements) {
+        List<com.craftinginterpreters.lox.ast.Stmt> converted =
+                (List<com.craftinginterpreters.lox.ast.Stmt>) toClassic.get(statements);
+        if (converted == null) {
+            converted = new ArrayList<>(statements.size());
+            for (Stmt statement : statements) {
+                converted.add(toClassic(statement));
+            }
+            remember(converted, statements);
+        }
+
+        return converted;
+    }
+
+    private void remember(Object classic, Object record) {
+        toRecord.put(classic, record);
+        toClassic.put(record, classic);
+    }
+
+    private List<Expr> toRecordExprs(List<com.craftinginterpreters.lox.ast.Expr> exprs) {
+        List<Expr> converted = new ArrayList<>(exprs.size());
+        for (com.craftinginterpreters.lox.ast.Expr expr : exprs) {
+            converted.add(toRecord(expr));
+        }
+
+        return converted;
+    }
+
+    private List<com.craftinginterpreters.lox.ast.Expr> toClassicExprs(List<Expr> exprs) {
+        List<com.craftinginterpreters.lox.ast.Expr> converted = new ArrayList<>(exprs.size());
+        for (Expr expr : exprs) {
+            converted.add(toClassic(expr));
+        }
+
+        return converted;
+    }
+
+    private com.craftinginterpreters.lox.ast.Expr convert(Expr expr) {
+        return switch (expr) {
+            case Expr.Assign e -> new com.craftinginterpreters.lox.ast.Expr.Assign(e.name(), toClassic(e.value()));
+            case Expr.Binary e -> new com.craftinginterpreters.lox.ast.Expr.Binary(
+                    toClassic(e.left()), e.operator(), toClassic(e.right()));
+            case Expr.Ternary e -> new com.craftinginterpreters.lox.ast.Expr.Ternary(
+                    toClassic(e.expr1()), e.operator1(), toClassic(e.expr2()), e.operator2(), toClassic(e.expr3()));
+            case Expr.Call e -> new com.craftinginterpreters.lox.ast.Expr.Call(
+                    toClassic(e.callee()), e.paren(), toClassicExprs(e.arguments()));
+            case Expr.Get e -> new com.craftinginterpreters.lox.ast.Expr.Get(toClassic(e.object()), e.name());
+            case Expr.Grouping e -> new com.craftinginterpreters.lox.ast.Expr.Grouping(toClassic(e.expression()));
+            case Expr.Literal e -> new com.craftinginterpreters.lox.ast.Expr.Literal(e.value());
+            case Expr.Interpolation e -> new com.craftinginterpreters.lox.ast.Expr.Interpolation(toClassicExprs(e.parts()));
+            case Expr.Logical e -> new com.craftinginterpreters.lox.ast.Expr.Logical(
+                    toClassic(e.left()), e.operator(), toClassic(e.right()));
+            case Expr.Set e -> new com.craftinginterpreters.lox.ast.Expr.Set(
+                    toClassic(e.object()), e.name(), toClassic(e.value()));
+            case Expr.Super e -> new com.craftinginterpreters.lox.ast.Expr.Super(e.keyword(), e.method());
+            case Expr.This e -> new com.craftinginterpreters.lox.ast.Expr.This(e.keyword());
+            case Expr.Unary e -> new com.craftinginterpreters.lox.ast.Expr.Unary(e.operator(), toClassic(e.right()));
+            case Expr.Lambda e -> new com.craftinginterpreters.lox.ast.Expr.Lambda(e.params(), toClassic(e.body()));
+            case Expr.Array e -> new com.craftinginterpreters.lox.ast.Expr.Array(e.bracket(), toClassicExprs(e.elements()));
+            case Expr.Subscript e -> new com.craftinginterpreters.lox.ast.Expr.Subscript(
+                    toClassic(e.object()), e.bracket(), toClassic(e.index()));
+            case Expr.SetSubscript e -> new com.craftinginterpreters.lox.ast.Expr.SetSubscript(
+                    toClassic(e.object()), e.bracket(), toClassic(e.index()), toClassic(e.value()));
+            case Expr.Variable e -> new com.craftinginterpreters.lox.ast.Expr.Variable(e.name());
+        };
+    }
+
+    private com.craftinginterpreters.lox.ast.Stmt convert(Stmt stmt) {
+        return switch (stmt) {
+            case Stmt.Block s -> new com.craftinginterpreters.lox.ast.Stmt.Block(toClassic(s.statements()));
+            case Stmt.Class s -> {
+                List<com.craftinginterpreters.lox.ast.Stmt.Function> methods = new ArrayList<>(s.methods().size());
+                for (Stmt.Function method : s.methods()) {
+                    methods.add((com.craftinginterpreters.lox.ast.Stmt.Function) toClassic(method));
+                }
+                yield new com.craftinginterpreters.lox.ast.Stmt.Class(
+                        s.name(), (com.craftinginterpreters.lox.ast.Expr.Variable) toClassic(s.superclass()), methods);
+            }
+            case Stmt.Expression s -> new com.craftinginterpreters.lox.ast.Stmt.Expression(toClassic(s.expression()));
+            case Stmt.ForIn s -> new com.craftinginterpreters.lox.ast.Stmt.ForIn(
+                    s.name(), toClassic(s.iterable()), toClassic(s.body()), s.iterator(), s.next());
+            case Stmt.Function s -> new com.craftinginterpreters.lox.ast.Stmt.Function(
+                    s.name(), s.params(), toClassic(s.body()), s.functionType());
+            case Stmt.If s -> new com.craftinginterpreters.lox.ast.Stmt.If(
+                    toClassic(s.condition()), toClassic(s.thenBranch()), toClassic(s.elseBranch()));
+            case Stmt.Print s -> new com.craftinginterpreters.lox.ast.Stmt.Print(toClassic(s.expression()));
+            case Stmt.Record s -> {
+                List<com.craftinginterpreters.lox.ast.Stmt.Function> methods = new ArrayList<>(s.methods().size());
+                for (Stmt.Function method : s.methods()) {
+                    methods.add((com.craftinginterpreters.lox.ast.Stmt.Function) toClassic(method));
+                }
+                yield new com.craftinginterpreters.lox.ast.Stmt.Record(s.name(), s.fields(), methods);
+            }
+            case Stmt.Return s -> {
+                com.craftinginterpreters.lox.ast.Stmt.Return classic =
+                        new com.craftinginterpreters.lox.ast.Stmt.Return(s.keyword(), toClassic(s.value()));
+                classic.tailCall = s.tailCall();
+                yield classic;
+            }
+            case Stmt.Break s -> new com.craftinginterpreters.lox.ast.Stmt.Break(s.keyword());
+            case Stmt.Var s -> new com.craftinginterpreters.lox.ast.Stmt.Var(s.name(), toClassic(s.initializer()));
+            case Stmt.While s -> new com.craftinginterpreters.lox.ast.Stmt.While(
+                    toClassic(s.condition()), toClassic(s.body()));
+        };
+    }
+
+    @Override
+    public Expr visitAssignExpr(com.craftinginterpreters.lox.ast.Expr.Assign expr) {
+        return new Expr.Assign(expr.name, toRecord(expr.value));
+    }
+
+    @Override
+    public Expr visitBinaryExpr(com.craftinginterpreters.lox.ast.Expr.Binary expr) {
+        return new Expr.Binary(toRecord(expr.left), expr.operator, toRecord(expr.right));
+    }
+
+    @Override
+    public Expr visitTernaryExpr(com.craftinginterpreters.lox.ast.Expr.Ternary expr) {
+        return new Expr.Ternary(toRecord(expr.expr1), expr.operator1, toRecord(expr.expr2), expr.operator2,
+                toRecord(expr.expr3));
+    }
+
+    @Override
+    public Expr visitCallExpr(com.craftinginterpreters.lox.ast.Expr.Call expr) {
+        return new Expr.Call(toRecord(expr.callee), expr.paren, toRecordExprs(expr.arguments),
+                callSites.apply(expr.paren));
+    }
+
+    @Override
+    public Expr visitGetExpr(com.craftinginterpreters.lox.ast.Expr.Get expr) {
+        return new Expr.Get(toRecord(expr.object), expr.name, inlineCaches.get());
+    }
+
+    @Override
+    public Expr visitGroupingExpr(com.craftinginterpreters.lox.ast.Expr.Grouping expr) {
+        return new Expr.Grouping(toRecord(expr.expression));
+    }
+
+    @Override
+    public Expr visitLiteralExpr(com.craftinginterpreters.lox.ast.Expr.Literal expr) {
+        return new Expr.Literal(expr.value);
+    }
+
+    @Override
+    public Expr visitInterpolationExpr(com.craftinginterpreters.lox.ast.Expr.Interpolation expr) {
+        return new Expr.Interpolation(toRecordExprs(expr.parts));
+    }
+
+    @Override
+    public Expr visitLogicalExpr(com.craftinginterpreters.lox.ast.Expr.Logical expr) {
+        return new Expr.Logical(toRecord(expr.left), expr.operator, toRecord(expr.right));
+    }
+
+    @Override
+    public Expr visitSetExpr(com.craftinginterpreters.lox.ast.Expr.Set expr) {
+        return new Expr.Set(toRecord(expr.object), expr.name, toRecord(expr.value), inlineCaches.get());
+    }
+
+    @Override
+    public Expr visitSuperExpr(com.craftinginterpreters.lox.ast.Expr.Super expr) {
+        return new Expr.Super(expr.keyword, expr.method, inlineCaches.get());
+    }
+
+    @Override
+    public Expr visitThisExpr(com.craftinginterpreters.lox.ast.Expr.This expr) {
+        return new Expr.This(expr.keyword);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(com.craftinginterpreters.lox.ast.Expr.Unary expr) {
+        return new Expr.Unary(expr.operator, toRecord(expr.right));
+    }
+
+    @Override
+    public Expr visitLambdaExpr(com.craftinginterpreters.lox.ast.Expr.Lambda expr) {
+        return new Expr.Lambda(expr.params, toRecords(expr.body));
+    }
+
+    @Override
+    public Expr visitArrayExpr(com.craftinginterpreters.lox.ast.Expr.Array expr) {
+        return new Expr.Array(expr.bracket, toRecordExprs(expr.elements));
+    }
+
+    @Override
+    public Expr visitSubscriptExpr(com.craftinginterpreters.lox.ast.Expr.Subscript expr) {
+        return new Expr.Subscript(toRecord(expr.object), expr.bracket, toRecord(expr.index));
+    }
+
+    @Override
+    public Expr visitSetSubscriptExpr(com.craftinginterpreters.lox.ast.Expr.SetSubscript expr) {
+        return new Expr.SetSubscript(toRecord(expr.object), expr.bracket, toRecord(expr.index), toRecord(expr.value));
+    }
+
+    @Override
+    public Expr visitVariableExpr(com.craftinginterpreters.lox.ast.Expr.Variable expr) {
+        return new Expr.Variable(expr.name);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(com.craftinginterpreters.lox.ast.Stmt.Block stmt) {
+        return new Stmt.Block(toRecords(stmt.statements));
+    }
+
+    @Override
+    public Stmt visitClassStmt(com.craftinginterpreters.lox.ast.Stmt.Class stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (com.craftinginterpreters.lox.ast.Stmt.Function method : stmt.methods) {
+            methods.add((Stmt.Function) toRecord(method));
+        }
+
+        return new Stmt.Class(stmt.name, (Expr.Variable) toRecord(stmt.superclass), methods);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(com.craftinginterpreters.lox.ast.Stmt.Expression stmt) {
+        return new Stmt.Expression(toRecord(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitForInStmt(com.craftinginterpreters.lox.ast.Stmt.ForIn stmt) {
+        return new Stmt.ForIn(stmt.name, toRecord(stmt.iterable), toRecord(stmt.body), stmt.iterator, stmt.next,
+                inlineCaches.get(), inlineCaches.get());
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(com.craftinginterpreters.lox.ast.Stmt.Function stmt) {
+        return new Stmt.Function(stmt.name, stmt.params, toRecords(stmt.body), stmt.functionType);
+    }
+
+    @Override
+    public Stmt visitIfStmt(com.craftinginterpreters.lox.ast.Stmt.If stmt) {
+        return new Stmt.If(toRecord(stmt.condition), toRecord(stmt.thenBranch), toRecord(stmt.elseBranch));
+    }
+
+    @Override
+    public Stmt visitPrintStmt(com.craftinginterpreters.lox.ast.Stmt.Print stmt) {
+        return new Stmt.Print(toRecord(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitRecordStmt(com.craftinginterpreters.lox.ast.Stmt.Record stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (com.craftinginterpreters.lox.ast.Stmt.Function method : stmt.methods) {
+            methods.add((Stmt.Function) toRecord(method));
+        }
+
+        return new Stmt.Record(stmt.name, stmt.fields, methods);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(com.craftinginterpreters.lox.ast.Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword, toRecord(stmt.value), stmt.tailCall);
+    }
+
+    @Override
+    public Stmt visitBreakStmt(com.craftinginterpreters.lox.ast.Stmt.Break stmt) {
+        return new Stmt.Break(stmt.keyword);
+    }
+
+    @Override
+    public Stmt visitVarStmt(com.craftinginterpreters.lox.ast.Stmt.Var stmt) {
+        return new Stmt.Var(stmt.name, toRecord(stmt.initializer));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(com.craftinginterpreters.lox.ast.Stmt.While stmt) {
+        return new Stmt.While(toRecord(stmt.condition), toRecord(stmt.body));
+    }
+}
@@ -0,0 +1,65 @@
+package com.craftinginterpreters.lox.ast.records;
+
+import com.craftinginterpreters.lox.ast.FunctionType;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.InlineCache;
+import com.craftinginterpreters.lox.runtime.LoxCallSite;
+
+import java.util.List;
+
+public sealed interface Expr permits Expr.Assign, Expr.Binary, Expr.Ternary, Expr.Call, Expr.Get, Expr.Grouping, Expr.Literal, Expr.Interpolation, Expr.Logical, Expr.Set, Expr.Super, Expr.This, Expr.Unary, Expr.Lambda, Expr.Array, Expr.Subscript, Expr.SetSubscript, Expr.Variable {
+
+    record Assign(Token name, Expr value) implements Expr {
+    }
+
+    record Binary(Expr left, Token operator, Expr right) implements Expr {
+    }
+
+    record Ternary(Expr expr1, Token operator1, Expr expr2, Token operator2, Expr expr3) implements Expr {
+    }
+
+    record Call(Expr callee, Token paren, List<Expr> arguments, LoxCallSite callSite) implements Expr {
+    }
+
+    record Get(Expr object, Token name, InlineCache inlineCache) implements Expr {
+    }
+
+    record Grouping(Expr expression) implements Expr {
+    }
+
+    record Literal(Object value) implements Expr {
+    }
+
+    record Interpolation(List<Expr> parts) implements Expr {
+    }
+
+    record Logical(Expr left, Token operator, Expr right) implements Expr {
+    }
+
+    record Set(Expr object, Token name, Expr value, InlineCache inlineCache) implements Expr {
+    }
+
+    record Super(Token keyword, Token method, InlineCache inlineCache) implements Expr {
+    }
+
+    record This(Token keyword) implements Expr {
+    }
+
+    record Unary(Token operator, Expr right) implements Expr {
+    }
+
+    record Lambda(List<Token> params, List<Stmt> body) implements Expr {
+    }
+
+    record Array(Token bracket, List<Expr> elements) implements Expr {
+    }
+
+    record Subscript(Expr object, Token bracket, Expr index) implements Expr {
+    }
+
+    record SetSubscript(Expr object, Token bracket, Expr index, Expr value) implements Expr {
+    }
+
+    record Variable(Token name) implements Expr {
+    }
+}
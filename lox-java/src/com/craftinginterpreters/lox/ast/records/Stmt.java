@@ -0,0 +1,47 @@
+package com.craftinginterpreters.lox.ast.records;
+
+import com.craftinginterpreters.lox.ast.FunctionType;
+import com.craftinginterpreters.lox.ast.TailCall;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.InlineCache;
+
+import java.util.List;
+
+public sealed interface Stmt permits Stmt.Block, Stmt.Class, Stmt.Expression, Stmt.ForIn, Stmt.Function, Stmt.If, Stmt.Print, Stmt.Record, Stmt.Return, Stmt.Break, Stmt.Var, Stmt.While {
+
+    record Block(List<Stmt> statements) implements Stmt {
+    }
+
+    record Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) implements Stmt {
+    }
+
+    record Expression(Expr expression) implements Stmt {
+    }
+
+    record ForIn(Token name, Expr iterable, Stmt body, Token iterator, Token next, InlineCache iteratorCache, InlineCache nextCache) implements Stmt {
+    }
+
+    record Function(Token name, List<Token> params, List<Stmt> body, FunctionType functionType) implements Stmt {
+    }
+
+    record If(Expr condition, Stmt thenBranch, Stmt elseBranch) implements Stmt {
+    }
+
+    record Print(Expr expression) implements Stmt {
+    }
+
+    record Record(Token name, List<Token> fields, List<Stmt.Function> methods) implements Stmt {
+    }
+
+    record Return(Token keyword, Expr value, TailCall tailCall) implements Stmt {
+    }
+
+    record Break(Token keyword) implements Stmt {
+    }
+
+    record Var(Token name, Expr initializer) implements Stmt {
+    }
+
+    record While(Expr condition, Stmt body) implements Stmt {
+    }
+}
@@ -1,8 +1,11 @@
 package com.craftinginterpreters.lox.lexer;
 
 import com.craftinginterpreters.lox.Lox;
+import com.craftinginterpreters.lox.runtime.Numbers;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +24,11 @@ public class Scanner {
         keywords.put("for", FOR);
         keywords.put("fun", FUN);
         keywords.put("if", IF);
+        keywords.put("in", IN);
         keywords.put("nil", NIL);
         keywords.put("or", OR);
         keywords.put("print", PRINT);
+        keywords.put("record", RECORD);
         keywords.put("return", RETURN);
         keywords.put("super", SUPER);
         keywords.put("this", THIS);
@@ -41,6 +46,9 @@ public class Scanner {
     private int current = 0;
     // Current line in the string.
     private int line = 0;
+    // The braces opened inside each interpolated expression being scanned, innermost first. A '}' that closes none of
+    // them ends the expression, and the string goes on after it.
+    private final Deque<Integer> interpolations = new ArrayDeque<>();
 
     public Scanner(String source) {
         this.source = source;
@@ -52,6 +60,9 @@ public class Scanner {
             scanToken();
         }
 
+        // The string of an interpolated expression that runs to the end of the source never got its closing '}'.
+        if (!interpolations.isEmpty()) Lox.error(line, "Unterminated interpolation.");
+
         tokens.add(new Token(EOF, "", null, line));
         return tokens;
     }
@@ -66,11 +77,27 @@ public class Scanner {
                 addToken(RIGHT_PAREN);
                 break;
             case '{':
+                if (!interpolations.isEmpty()) interpolations.push(interpolations.pop() + 1);
                 addToken(LEFT_BRACE);
                 break;
             case '}':
+                if (!interpolations.isEmpty()) {
+                    int braces = interpolations.pop();
+                    if (braces == 0) {
+                        string();
+                        break;
+                    }
+
+                    interpolations.push(braces - 1);
+                }
                 addToken(RIGHT_BRACE);
                 break;
+            case '[':
+                addToken(LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(RIGHT_BRACKET);
+                break;
             case ',':
                 addToken(COMMA);
                 break;
@@ -202,8 +229,19 @@ public class Scanner {
         return isAlpha(c) || isDigit(c);
     }
 
+    // Scans the rest of a string, which starts right after its opening '"', or after the '}' that ends an interpolated
+    // expression.
     private void string() {
         while (peek() != '"' && !isAtEnd()) {
+            if (peek() == '$' && peekNext() == '{') {
+                String value = source.substring(start + 1, current);
+                advance();
+                advance();
+                addToken(INTERPOLATION, value);
+                interpolations.push(0);
+                return;
+            }
+
             if (peek() == '\n') line++;
             advance();
         }
@@ -216,7 +254,7 @@ public class Scanner {
         // We advance by one, since we want to consume the last '"'.
         advance();
 
-        // Trim the surrounding quotes.
+        // Trim the surrounding quotes, or the '}' of the interpolated expression that the string goes on after.
         String value = source.substring(start + 1, current - 1);
         addToken(STRING, value);
     }
@@ -234,8 +272,10 @@ public class Scanner {
             while (isDigit(peek())) advance();
         }
 
+        // Literals are boxed as the runtime boxes the results of arithmetic, so that a whole number is a Long wherever it
+        // comes from.
         double number = Double.parseDouble(source.substring(start, current));
-        addToken(NUMBER, number);
+        addToken(NUMBER, Numbers.box(number));
     }
 
     private void identifier() {
@@ -245,7 +285,10 @@ public class Scanner {
         // it an identifier instead of splitting it into "or" operator and "chid" identifier.
         String text = source.substring(start, current);
         TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
+        if (type == null) {
+            tokens.add(new Token(IDENTIFIER, text, null, line, Symbol.intern(text)));
+            return;
+        }
 
         addToken(type);
     }
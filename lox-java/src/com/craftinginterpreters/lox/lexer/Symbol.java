@@ -0,0 +1,45 @@
+package com.craftinginterpreters.lox.lexer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// An identifier interned in the process-wide symbol table, which the scanner fills while scanning.
+//
+// There is a single symbol per name, thus symbols are compared by identity, and they hash to a value computed once
+// from their id, so that the maps of the runtime never have to hash or compare the characters of a name.
+public final class Symbol {
+
+    private static final Map<String, Symbol> table = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    public static final Symbol INIT = intern("init");
+
+    public final String name;
+    public final int id;
+    private final int hash;
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+        // Ids are consecutive, so we spread them with the golden ratio to fill the buckets of hash tables evenly.
+        this.hash = id * 0x9E3779B9;
+    }
+
+    public static Symbol intern(String name) {
+        Symbol symbol = table.get(name);
+        if (symbol != null) return symbol;
+
+        return table.computeIfAbsent(name, n -> new Symbol(n, nextId.getAndIncrement()));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
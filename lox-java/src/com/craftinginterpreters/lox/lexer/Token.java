@@ -5,12 +5,19 @@ public class Token {
     public final String lexeme;
     public final Object literal;
     public final int line;
+    // The interned lexeme of identifiers, which the runtime uses to look up fields and methods.
+    public final Symbol symbol;
 
     public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, null);
+    }
+
+    public Token(TokenType type, String lexeme, Object literal, int line, Symbol symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
     }
 
     public String toString() {
@@ -2,7 +2,7 @@ package com.craftinginterpreters.lox.lexer;
 
 public enum TokenType {
     // Single-character tokens.
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
+    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE, LEFT_BRACKET, RIGHT_BRACKET,
     COMMA, DOT, MINUS, PLUS, COLON, SEMICOLON, SLASH, STAR, QUESTION_MARK,
 
     // One or two character tokens.
@@ -13,10 +13,12 @@ public enum TokenType {
 
     // Literals.
     IDENTIFIER, STRING, NUMBER,
+    // The part of an interpolated string up to an interpolated expression, where the last part is a STRING.
+    INTERPOLATION,
 
     // Keywords.
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE, BREAK,
+    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, IN, NIL, OR,
+    PRINT, RECORD, RETURN, SUPER, THIS, TRUE, VAR, WHILE, BREAK,
 
     EOF
 }
\ No newline at end of file
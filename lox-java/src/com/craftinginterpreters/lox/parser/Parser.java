@@ -4,6 +4,7 @@ import com.craftinginterpreters.lox.Lox;
 import com.craftinginterpreters.lox.ast.Expr;
 import com.craftinginterpreters.lox.ast.FunctionType;
 import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.lexer.Symbol;
 import com.craftinginterpreters.lox.lexer.Token;
 import com.craftinginterpreters.lox.lexer.TokenType;
 
@@ -35,6 +36,7 @@ public class Parser {
     private Stmt declaration() {
         try {
             if (match(CLASS)) return classDeclaration();
+            if (match(RECORD)) return recordDeclaration();
             if (match(FUN)) return function("function");
             if (match(VAR)) return varDeclaration();
 
@@ -66,6 +68,37 @@ public class Parser {
         return new Stmt.Class(name, superclass, methods);
     }
 
+    private Stmt recordDeclaration() {
+        Token name = consume(IDENTIFIER, "Expect record name.");
+        consume(LEFT_PAREN, "Expect '(' after record name.");
+
+        List<Token> fields = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (fields.size() >= 255) {
+                    error(peek(), "Can't have more than 255 fields.");
+                }
+
+                fields.add(consume(IDENTIFIER, "Expect field name."));
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "Expect ')' after fields.");
+
+        // The body is optional, since most records are nothing more than their fields.
+        List<Stmt.Function> methods = new ArrayList<>();
+        if (match(LEFT_BRACE)) {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                methods.add(function("method"));
+            }
+
+            consume(RIGHT_BRACE, "Expect '}' after record body.");
+        } else {
+            consume(SEMICOLON, "Expect ';' or '{' after record fields.");
+        }
+
+        return new Stmt.Record(name, fields, methods);
+    }
+
     private Stmt.Function function(String kind) {
         FunctionType functionType = FunctionType.FUNCTION;
 
@@ -190,7 +223,10 @@ public class Parser {
         if (match(SEMICOLON)) {
             initializer = null;
         } else if (match(VAR)) {
+            if (check(IDENTIFIER) && checkNext(IN)) return forInStatement();
             initializer = varDeclaration();
+        } else if (check(IDENTIFIER) && checkNext(IN)) {
+            return forInStatement();
         } else {
             initializer = expressionStatement();
         }
@@ -225,6 +261,21 @@ public class Parser {
         return body;
     }
 
+    // The loop variable is always a fresh one, whether it's written with `var` or not. We make up the names of the
+    // methods the loop calls on instances here, so that each loop has call sites and inline caches of its own.
+    private Stmt forInStatement() {
+        Token name = consume(IDENTIFIER, "Expect variable name.");
+        consume(IN, "Expect 'in' after loop variable.");
+        Expr iterable = expression();
+        consume(RIGHT_PAREN, "Expect ')' after for-in clauses.");
+        Stmt body = statement();
+
+        Token iterator = new Token(IDENTIFIER, "iterator", null, name.line, Symbol.intern("iterator"));
+        Token next = new Token(IDENTIFIER, "next", null, name.line, Symbol.intern("next"));
+
+        return new Stmt.ForIn(name, iterable, body, iterator, next);
+    }
+
     private List<Stmt> block() {
         List<Stmt> statements = new ArrayList<>();
         while (!check(RIGHT_BRACE) && !isAtEnd()) {
@@ -258,6 +309,8 @@ public class Parser {
                 return new Expr.Assign(name, value);
             } else if (expr instanceof Expr.Get get) {
                 return new Expr.Set(get.object, get.name, value);
+            } else if (expr instanceof Expr.Subscript subscript) {
+                return new Expr.SetSubscript(subscript.object, subscript.bracket, subscript.index, value);
             }
 
             error(equals, "Invalid assignment target");
@@ -392,6 +445,10 @@ public class Parser {
             } else if (match(DOT)) {
                 Token name = consume(IDENTIFIER, "Expect property name after '.'.");
                 expr = new Expr.Get(expr, name);
+            } else if (match(LEFT_BRACKET)) {
+                Expr index = expression();
+                Token bracket = consume(RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expr.Subscript(expr, bracket, index);
             } else {
                 break;
             }
@@ -450,6 +507,14 @@ public class Parser {
             return new Expr.Literal(previous().literal);
         }
 
+        if (match(INTERPOLATION)) {
+            return interpolation();
+        }
+
+        if (match(LEFT_BRACKET)) {
+            return array();
+        }
+
         if (match(SUPER)) {
             Token keyword = previous();
             consume(DOT, "Expect '.' after 'super'.");
@@ -480,6 +545,33 @@ public class Parser {
         throw error(peek(), "Expect expression.");
     }
 
+    private Expr array() {
+        List<Expr> elements = new ArrayList<>();
+        if (!check(RIGHT_BRACKET)) {
+            do {
+                elements.add(expression());
+            } while (match(COMMA));
+        }
+
+        Token bracket = consume(RIGHT_BRACKET, "Expect ']' after array elements.");
+        return new Expr.Array(bracket, elements);
+    }
+
+    private Expr interpolation() {
+        // Each INTERPOLATION token is followed by the expression it interpolates, and the string ends with a STRING.
+        List<Expr> parts = new ArrayList<>();
+        do {
+            String text = (String) previous().literal;
+            if (!text.isEmpty()) parts.add(new Expr.Literal(text));
+            parts.add(expression());
+        } while (match(INTERPOLATION));
+
+        String text = (String) consume(STRING, "Expect end of interpolated string.").literal;
+        if (!text.isEmpty()) parts.add(new Expr.Literal(text));
+
+        return new Expr.Interpolation(parts);
+    }
+
     private boolean match(TokenType... types) {
         for (TokenType type : types) {
             if (check(type)) {
@@ -506,6 +598,11 @@ public class Parser {
         return false;
     }
 
+    private boolean checkNext(TokenType type) {
+        if (isAtEnd() || current + 1 >= tokens.size()) return false;
+        return tokens.get(current + 1).type == type;
+    }
+
     private Token advance() {
         if (!isAtEnd()) current++;
         return previous();
@@ -542,6 +639,7 @@ public class Parser {
 
             switch (peek().type) {
                 case CLASS:
+                case RECORD:
                 case FUN:
                 case VAR:
                 case FOR:
@@ -557,5 +655,6 @@ public class Parser {
     }
 
     private static class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
     }
 }
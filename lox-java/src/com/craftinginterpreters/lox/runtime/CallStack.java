@@ -0,0 +1,148 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.lexer.Token;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+// Deep recursion for Lox calls, by spreading the Java stack they need over the stacks of several threads.
+//
+// This doesn't make the interpreter stackless: the tree-walker evaluates each call on the Java stack, with around a
+// dozen Java frames per Lox call. What it does is to split that stack in segments: every FRAMES_PER_SEGMENT Lox calls,
+// the next call continues on the thread of the next segment, which has a stack of its own, while the calling thread
+// waits for it. The recursion depth is therefore bounded by the memory budget given to the segments, instead of by the
+// `-Xss` of the thread that started the program.
+//
+// Handing a call over to another thread costs far more than the call itself, so the thread of a segment outlives the
+// call that entered it: it waits for the next one, and is only released once the recursion has unwound RELEASE_MARGIN
+// calls below the start of the segment. A recursion that goes back and forth across the boundary of a segment keeps
+// handing its calls to the same thread, instead of starting a thread per call.
+public class CallStack {
+
+    public static final long DEFAULT_BUDGET = 1024L * 1024 * 1024;
+
+    // A Lox call takes around a dozen Java frames, so this leaves plenty of room for the deeply nested expressions
+    // that each call might evaluate.
+    private static final long SEGMENT_STACK_SIZE = 16L * 1024 * 1024;
+    private static final int FRAMES_PER_SEGMENT = 1000;
+    private static final int RELEASE_MARGIN = FRAMES_PER_SEGMENT / 2;
+
+    private final int maxDepth;
+    private int depth = 0;
+    // The segments started so far, where segments[i] runs the calls from depth i * FRAMES_PER_SEGMENT on. The first
+    // one is the thread the program runs on, which isn't kept here.
+    private Segment[] segments = new Segment[8];
+    private int topSegment = 0;
+    // The depth under which the top segment is released.
+    private int releaseBelow = Integer.MIN_VALUE;
+
+    public CallStack(long budget) {
+        long segments = Math.max(1, budget / SEGMENT_STACK_SIZE);
+        this.maxDepth = (int) Math.min(Integer.MAX_VALUE, segments * FRAMES_PER_SEGMENT);
+    }
+
+    // Enters a call, and tells if it has to run on the next segment through onSegment(), rather than right away.
+    public boolean push(Token site) {
+        if (depth == maxDepth) {
+            throw new Interpreter.RuntimeError(site, "Stack overflow.");
+        }
+
+        return ++depth % FRAMES_PER_SEGMENT == 0;
+    }
+
+    public void pop() {
+        if (--depth < releaseBelow) releaseTopSegment();
+    }
+
+    // Runs the call that was just pushed on the segment it starts.
+    public <T> T onSegment(Supplier<T> call) {
+        int index = depth / FRAMES_PER_SEGMENT;
+        if (index == segments.length) {
+            Segment[] grown = new Segment[segments.length * 2];
+            System.arraycopy(segments, 0, grown, 0, segments.length);
+            segments = grown;
+        }
+
+        if (segments[index] == null) {
+            segments[index] = new Segment();
+            topSegment = index;
+            releaseBelow = index * FRAMES_PER_SEGMENT - RELEASE_MARGIN;
+        }
+
+        return segments[index].call(call);
+    }
+
+    private void releaseTopSegment() {
+        segments[topSegment].release();
+        segments[topSegment] = null;
+        topSegment--;
+        releaseBelow = topSegment > 0 ? topSegment * FRAMES_PER_SEGMENT - RELEASE_MARGIN : Integer.MIN_VALUE;
+    }
+
+    // Runs the program on a segment of its own, so that the depth it can reach doesn't depend on the stack of whoever
+    // started it.
+    public <T> T onProgramSegment(Supplier<T> program) {
+        Segment segment = new Segment();
+        try {
+            return segment.call(program);
+        } finally {
+            segment.release();
+        }
+    }
+
+    // A thread that runs the calls handed to it one at a time, until it is released.
+    private static class Segment implements Runnable {
+        private final Semaphore started = new Semaphore(0);
+        private final Semaphore finished = new Semaphore(0);
+        private Supplier<?> body;
+        private Object result;
+        private Throwable failure;
+
+        Segment() {
+            Thread thread = new Thread(null, this, "lox-stack-segment", SEGMENT_STACK_SIZE);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T call(Supplier<T> body) {
+            // The semaphores also publish the fields from one thread to the other.
+            this.body = body;
+            started.release();
+            finished.acquireUninterruptibly();
+
+            Object result = this.result;
+            Throwable failure = this.failure;
+            this.result = null;
+            this.failure = null;
+
+            // Errors must surface in the calling segment, as if the call had run on its stack.
+            if (failure instanceof RuntimeException exception) throw exception;
+            if (failure instanceof Error error) throw error;
+
+            return (T) result;
+        }
+
+        void release() {
+            body = null;
+            started.release();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                started.acquireUninterruptibly();
+                if (body == null) return;
+
+                try {
+                    result = body.get();
+                } catch (Throwable t) {
+                    failure = t;
+                }
+
+                body = null;
+                finished.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.craftinginterpreters.lox.runtime;
+
+// The way the execution of a statement completed, which tells the enclosing statements whether to keep going.
+//
+// When a statement completes with RETURN, the returned value is held by the interpreter until the enclosing call
+// takes it, so that no object has to be allocated to carry it. TAIL_CALL works the same way, but what is held is the
+// callee and the arguments of a call the enclosing call has to carry on with.
+public enum Completion {
+    NORMAL,
+    BREAK,
+    RETURN,
+    TAIL_CALL
+}
@@ -0,0 +1,101 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.runtime.constructs.LoxArray;
+import com.craftinginterpreters.lox.runtime.constructs.LoxCallable;
+import com.craftinginterpreters.lox.runtime.constructs.LoxClass;
+import com.craftinginterpreters.lox.runtime.constructs.LoxInstance;
+import com.craftinginterpreters.lox.runtime.constructs.LoxMap;
+import com.craftinginterpreters.lox.runtime.constructs.LoxVector;
+import com.craftinginterpreters.lox.runtime.constructs.NativeFunction;
+
+import java.util.function.DoubleUnaryOperator;
+
+// The natives every interpreter starts with: time, math, strings and type checks.
+public final class CoreLibrary {
+
+    private CoreLibrary() {
+    }
+
+    public static void install(Natives natives) {
+        natives.define("clock", interpreter -> Numbers.box(System.currentTimeMillis() / 1000.0));
+
+        math(natives, "abs", Math::abs);
+        math(natives, "floor", Math::floor);
+        math(natives, "ceil", Math::ceil);
+        // Halves round up, as with floor(value + 0.5), but without the sum rounding 0.49999999999999994 up to 1. From
+        // 2^52 on every double is whole already, and NaN stays NaN.
+        math(natives, "round", value -> Math.abs(value) < 0x1p52 ? (double) Math.round(value) : value);
+        math(natives, "sqrt", Math::sqrt);
+        math(natives, "sin", Math::sin);
+        math(natives, "cos", Math::cos);
+        math(natives, "log", Math::log);
+        natives.define("pow", (interpreter, a, b) -> Numbers.box(Math.pow(number(a), number(b))));
+        natives.define("min", (interpreter, a, b) -> Numbers.box(Math.min(number(a), number(b))));
+        natives.define("max", (interpreter, a, b) -> Numbers.box(Math.max(number(a), number(b))));
+
+        natives.define("len", (interpreter, value) -> {
+            if (value instanceof LoxArray array) return Numbers.box(array.size());
+            if (value instanceof LoxMap map) return Numbers.box(map.size());
+            if (value instanceof LoxVector vector) return Numbers.box(vector.length());
+            return Numbers.box(string(value).length());
+        });
+        natives.define("substring", (interpreter, value, start, end) -> {
+            String string = string(value);
+            int from = index(start, string.length());
+            int to = index(end, string.length());
+            if (from > to) throw new NativeFunction.Failure("Start index must not be after the end index.");
+
+            return string.substring(from, to);
+        });
+        natives.define("charCode", (interpreter, value, index) -> {
+            String string = string(value);
+            int at = index(index, string.length() - 1);
+            return Numbers.box(string.charAt(at));
+        });
+
+        natives.define("Map", interpreter -> new LoxMap());
+        // A vector of zeros of the given length, or a copy of an array of numbers.
+        natives.define("Float64Vector", (interpreter, value) -> {
+            if (value instanceof LoxArray array) return LoxVector.of(array);
+
+            double length = number(value);
+            if (length != Math.rint(length) || length < 0 || length > Integer.MAX_VALUE) {
+                throw new NativeFunction.Failure("Vector length must be a whole number.");
+            }
+            return LoxVector.zeros((int) length);
+        });
+        natives.define("vectorKernels", interpreter -> LoxVector.kernels());
+
+        natives.define("isNumber", (interpreter, value) -> Numbers.isNumber(value));
+        natives.define("isString", (interpreter, value) -> Rope.isString(value));
+        natives.define("isBoolean", (interpreter, value) -> value instanceof Boolean);
+        natives.define("isFunction", (interpreter, value) -> value instanceof LoxCallable && !(value instanceof LoxClass));
+        natives.define("isClass", (interpreter, value) -> value instanceof LoxClass);
+        natives.define("isInstance", (interpreter, value) -> value instanceof LoxInstance && !(value instanceof LoxClass));
+        natives.define("isArray", (interpreter, value) -> value instanceof LoxArray);
+        natives.define("isMap", (interpreter, value) -> value instanceof LoxMap);
+        natives.define("isVector", (interpreter, value) -> value instanceof LoxVector);
+    }
+
+    private static void math(Natives natives, String name, DoubleUnaryOperator operator) {
+        natives.define(name, (interpreter, value) -> Numbers.box(operator.applyAsDouble(number(value))));
+    }
+
+    static double number(Object value) {
+        if (!Numbers.isNumber(value)) throw new NativeFunction.Failure("Argument must be a number.");
+        return Numbers.toDouble(value);
+    }
+
+    static String string(Object value) {
+        if (!Rope.isString(value)) throw new NativeFunction.Failure("Argument must be a string.");
+        return value.toString();
+    }
+
+    // A whole number between 0 and the limit, both included.
+    static int index(Object value, int limit) {
+        double index = number(value);
+        if (index != Math.rint(index)) throw new NativeFunction.Failure("Index must be a whole number.");
+        if (index < 0 || index > limit) throw new NativeFunction.Failure("Index out of bounds.");
+        return (int) index;
+    }
+}
@@ -1,27 +1,53 @@
 package com.craftinginterpreters.lox.runtime;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Environment {
 
+    private static final Object[] NO_VALUES = new Object[0];
+
     private final Environment enclosing;
-    private final List<Object> values = new ArrayList<>();
+    private Object[] values;
+    private int size = 0;
 
     public Environment(Environment enclosing) {
+        this(enclosing, 0);
+    }
+
+    // Frames know how many values they will hold up front, so that the arguments can be written without growing them.
+    public Environment(Environment enclosing, int capacity) {
         this.enclosing = enclosing;
+        this.values = capacity == 0 ? NO_VALUES : new Object[capacity];
     }
 
     public void define(Object value) {
-        values.add(value);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+        }
+
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    // Rebinds a variable of this environment in place.
+    public void assign(int variableIndex, Object value) {
+        values[variableIndex] = value;
     }
 
     public void assignAt(Location location, Object value) {
-        ancestor(location.getDistance()).values.set(location.getVariableIndex(), value);
+        ancestor(location.getDistance()).values[location.getVariableIndex()] = value;
     }
 
     public Object getAt(Location location) {
-        return ancestor(location.distance).values.get(location.getVariableIndex());
+        return ancestor(location.distance).values[location.getVariableIndex()];
     }
 
     private Environment ancestor(int distance) {
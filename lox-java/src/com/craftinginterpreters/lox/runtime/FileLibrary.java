@@ -0,0 +1,49 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.runtime.constructs.LoxChunks;
+import com.craftinginterpreters.lox.runtime.constructs.LoxFileWriter;
+import com.craftinginterpreters.lox.runtime.constructs.LoxLines;
+import com.craftinginterpreters.lox.runtime.constructs.LoxStore;
+import com.craftinginterpreters.lox.runtime.constructs.NativeFunction;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+// The natives that read and write files. Reading is lazy: readLines() and readChunks() only name a file, which each
+// for-in loop over them then streams from disk, so scripts can go through files of any size in constant memory. Stores
+// keep their entries in a memory-mapped file, out of the heap.
+public final class FileLibrary {
+
+    private FileLibrary() {
+    }
+
+    public static void install(Natives natives) {
+        natives.define("readLines", (interpreter, path) -> new LoxLines(path(path)));
+        natives.define("readChunks", (interpreter, path, size) -> {
+            Path file = path(path);
+            double chunkSize = CoreLibrary.number(size);
+            if (chunkSize != Math.rint(chunkSize) || chunkSize < 1 || chunkSize > Integer.MAX_VALUE) {
+                throw new NativeFunction.Failure("Chunk size must be a positive whole number.");
+            }
+
+            return new LoxChunks(file, (int) chunkSize);
+        });
+        // The interpreter keeps the writers, to flush what they hold when the program ends.
+        natives.define("openWriter", (interpreter, path) -> {
+            return interpreter.register(LoxFileWriter.open(path(path), false));
+        });
+        natives.define("openAppender", (interpreter, path) -> {
+            return interpreter.register(LoxFileWriter.open(path(path), true));
+        });
+        natives.define("openStore", (interpreter, path) -> LoxStore.open(path(path)));
+    }
+
+    private static Path path(Object value) {
+        String path = CoreLibrary.string(value);
+        try {
+            return Path.of(path);
+        } catch (InvalidPathException e) {
+            throw new NativeFunction.Failure("Invalid path '" + path + "'.");
+        }
+    }
+}
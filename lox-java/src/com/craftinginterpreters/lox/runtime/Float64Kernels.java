@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox.runtime;
+
+// The bulk operations of Float64Vector, over the first `length` elements of their arrays. The operations that update a
+// vector write into their first array.
+public interface Float64Kernels {
+
+    String name();
+
+    void add(double[] a, double[] b, int length);
+
+    void mul(double[] a, double[] b, int length);
+
+    // a = a * b + c, with a single rounding.
+    void fma(double[] a, double[] b, double[] c, int length);
+
+    void scale(double[] a, double factor, int length);
+
+    double sum(double[] a, int length);
+
+    double min(double[] a, int length);
+
+    double max(double[] a, int length);
+
+    double dot(double[] a, double[] b, int length);
+
+    // The SIMD kernels need the Vector API, which is an incubator module: javac and the JVM only resolve it when they
+    // are given `--add-modules jdk.incubator.vector`. So that the rest of the interpreter builds without it, the kernels
+    // live in src-simd, which is compiled on its own with the module, and we only reach them by name. Loading them fails
+    // when they weren't built or the JVM runs without the module, in which case the scalar kernels take over. Setting
+    // the `lox.vector` property to `scalar` picks them regardless.
+    static Float64Kernels load() {
+        if (!"scalar".equals(System.getProperty("lox.vector"))) {
+            try {
+                Class<?> kernels = Class.forName("com.craftinginterpreters.lox.runtime.SimdFloat64Kernels");
+                return (Float64Kernels) kernels.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The kernels or the module aren't there.
+            }
+        }
+
+        return new ScalarFloat64Kernels();
+    }
+}
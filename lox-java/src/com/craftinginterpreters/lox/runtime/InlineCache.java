@@ -0,0 +1,80 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.runtime.constructs.LoxClass;
+import com.craftinginterpreters.lox.runtime.constructs.LoxFunction;
+import com.craftinginterpreters.lox.runtime.constructs.Shape;
+
+// The lookups done by a single property access of the program, keyed by the class and the shape of the receivers
+// seen there.
+//
+// A site starts monomorphic and becomes polymorphic as new receivers show up, until it has seen more than MAX_ENTRIES
+// of them. From then on it is megamorphic, and every access goes through the regular lookup.
+public class InlineCache {
+
+    private static final int MAX_ENTRIES = 4;
+
+    // The interpreter the cache belongs to, since the nodes of the classic tree that hold the caches might be run by
+    // others.
+    final Interpreter owner;
+    private final Entry[] entries = new Entry[MAX_ENTRIES];
+    private int size = 0;
+    private boolean megamorphic = false;
+    private long hits = 0;
+    private long misses = 0;
+
+    InlineCache(Interpreter owner) {
+        this.owner = owner;
+    }
+
+    Entry lookup(LoxClass klass, Shape shape) {
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries[i];
+            if (entry.klass == klass && entry.shape == shape) {
+                hits++;
+                return entry;
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    void add(Entry entry) {
+        if (size == MAX_ENTRIES) {
+            megamorphic = true;
+            return;
+        }
+
+        entries[size++] = entry;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    // What a lookup resolved to: the slot of a field, or a method. Stores that add a field also carry the shape the
+    // receiver moves to.
+    static class Entry {
+        final LoxClass klass;
+        final Shape shape;
+        final int slot;
+        final LoxFunction method;
+        final Shape transition;
+
+        Entry(LoxClass klass, Shape shape, int slot, LoxFunction method, Shape transition) {
+            this.klass = klass;
+            this.shape = shape;
+            this.slot = slot;
+            this.method = method;
+            this.transition = transition;
+        }
+    }
+}
@@ -4,60 +4,172 @@ import com.craftinginterpreters.lox.Lox;
 import com.craftinginterpreters.lox.ast.Expr;
 import com.craftinginterpreters.lox.ast.FunctionType;
 import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.ast.TailCall;
+import com.craftinginterpreters.lox.lexer.Symbol;
 import com.craftinginterpreters.lox.lexer.Token;
 import com.craftinginterpreters.lox.lexer.TokenType;
 import com.craftinginterpreters.lox.runtime.constructs.*;
-import com.craftinginterpreters.lox.runtime.unwinders.Break;
-import com.craftinginterpreters.lox.runtime.unwinders.Return;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.craftinginterpreters.lox.lexer.TokenType.COLON;
 import static com.craftinginterpreters.lox.lexer.TokenType.QUESTION_MARK;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
 
-    public final Environment globals = new Environment(null);
+    private final Natives natives = new Natives();
+    public final Environment globals = new Environment(natives.environment());
     private final Map<Expr, Environment.Location> locals = new HashMap<>();
-    private Environment environment = globals;
+    // The inline caches of the property accesses, which live on the node of each site. They are also listed here, to
+    // report on them.
+    private final List<InlineCache> inlineCaches = new ArrayList<>();
+    protected Environment environment = globals;
+    // The value of the last statement that completed with RETURN.
+    private Object returnValue;
+    // The call the last statement that completed with TAIL_CALL is waiting for.
+    private TailCallable tailCallee;
+    private LoxInstance tailReceiver;
+    private Object[] tailArguments;
+    private boolean tailFrameReusable;
+    // The value of the last numeric evaluation that turned out not to be a number, which the caller has yet to take.
+    protected boolean hasNonNumber = false;
+    private Object nonNumber;
+    // The depth of the Lox calls, which is only tracked when deep recursion is enabled.
+    private CallStack callStack;
+    private Output output = Output.buffered(System.out);
+    // The files the program opened for writing. Their buffers are flushed along with the output, so that what the
+    // program wrote reaches them even if it ends without closing them, or fails. They are only flushed, never closed,
+    // since the REPL goes on with them after each line.
+    private final List<LoxFileWriter> writers = new ArrayList<>();
+    private boolean hadRuntimeError = false;
+
+    public Interpreter() {
+        CoreLibrary.install(natives);
+        FileLibrary.install(natives);
+    }
+
+    public Natives natives() {
+        return natives;
+    }
 
     public void resolve(Expr expr, int distance, int variableIndex) {
         locals.put(expr, new Environment.Location(distance, variableIndex));
     }
 
+    public Map<Expr, Environment.Location> resolutions() {
+        return Collections.unmodifiableMap(locals);
+    }
+
+    public List<InlineCache> inlineCaches() {
+        return Collections.unmodifiableList(inlineCaches);
+    }
+
+    InlineCache newInlineCache() {
+        InlineCache cache = new InlineCache(this);
+        inlineCaches.add(cache);
+        return cache;
+    }
+
+    // A node of the classic tree keeps the cache of the interpreter that ran it last: another interpreter running the
+    // same statements, as the tools do, starts over with a cache of its own, since the classes it would find there
+    // aren't its own.
+    private boolean isOwn(InlineCache cache) {
+        return cache != null && cache.owner == this;
+    }
+
+    public void useCallStack(CallStack callStack) {
+        this.callStack = callStack;
+    }
+
+    public void useOutput(Output output) {
+        this.output = output;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
     public void interpret(List<Stmt> statements) {
         try {
-            for (Stmt stmt : statements) {
-                if (stmt != null) {
-                    execute(stmt);
+            onProgramStack(() -> {
+                for (Stmt stmt : statements) {
+                    if (stmt != null) {
+                        execute(stmt);
+                    }
                 }
-            }
+
+                return null;
+            });
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            reportRuntimeError(error);
+        } finally {
+            flushOutput();
         }
     }
 
     public void interpret(Expr expression) {
         try {
-            Object value = evaluate(expression);
-            System.out.println(stringify(value));
+            Object value = onProgramStack(() -> evaluate(expression));
+            print(value);
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            reportRuntimeError(error);
+        } finally {
+            flushOutput();
+        }
+    }
+
+    // What the program printed so far comes before the error.
+    protected void reportRuntimeError(RuntimeError error) {
+        flushOutput();
+        hadRuntimeError = true;
+        Lox.runtimeError(error);
+    }
+
+    protected void flushOutput() {
+        output.flush();
+
+        for (LoxFileWriter writer : writers) {
+            if (writer.isClosed()) continue;
+
+            try {
+                writer.flush();
+            } catch (NativeFunction.Failure failure) {
+                // This runs after the program, where there is no call to report the error at.
+                System.err.println(failure.getMessage());
+                hadRuntimeError = true;
+            }
         }
     }
 
-    public void execute(Stmt stmt) {
-        stmt.accept(this);
+    public LoxFileWriter register(LoxFileWriter writer) {
+        // The writers closed by then are dropped, so that a program that opens files in a loop doesn't keep them all.
+        writers.removeIf(LoxFileWriter::isClosed);
+        writers.add(writer);
+        return writer;
+    }
+
+    protected <T> T onProgramStack(Supplier<T> program) {
+        if (callStack == null) return program.get();
+
+        return callStack.onProgramSegment(program);
+    }
+
+    public Completion execute(Stmt stmt) {
+        return stmt.accept(this);
     }
 
     public Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
-    private boolean isTruthy(Object object) {
+    protected boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
 
@@ -65,14 +177,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
     }
 
     private boolean isEqual(Object a, Object b) {
+        a = Rope.flatten(a);
+        b = Rope.flatten(b);
+
         if (a == null && b == null) return true;
         if (a == null) return false;
+        if (Numbers.isNumber(a) && Numbers.isNumber(b)) return Numbers.isEqual(a, b);
 
         return a.equals(b);
     }
 
     private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
+        if (Numbers.isNumber(operand)) return;
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
@@ -82,73 +198,99 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
         }
     }
 
-    private String stringify(Object object) {
+    // The text of a value, as printed or interpolated.
+    public static String stringify(Object object) {
         if (object == null) return "nil";
 
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
+        if (Numbers.isNumber(object)) return Numbers.format(object);
 
         return object.toString();
     }
 
+    // Appends the text of a value, as stringify() writes it, without building a String for it first.
+    public static void appendValue(StringBuilder text, Object value) {
+        appendValue(text, value, null);
+    }
+
+    // The containers being printed are tracked from the first one that is met.
+    public static void appendValue(StringBuilder text, Object value, Set<LoxContainer> enclosing) {
+        if (value instanceof String string) {
+            text.append(string);
+        } else if (value instanceof Rope rope) {
+            rope.appendTo(text);
+        } else if (Numbers.isNumber(value)) {
+            Numbers.append(text, Numbers.toDouble(value));
+        } else if (value instanceof LoxContainer container) {
+            container.appendTo(text, enclosing != null ? enclosing : Collections.newSetFromMap(new IdentityHashMap<>()));
+        } else {
+            text.append(stringify(value));
+        }
+    }
+
     private Object lookUpVariable(Expr expr) {
         Environment.Location location = locals.get(expr);
         return environment.getAt(location);
     }
 
     @Override
-    public Object visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
         evaluate(stmt.expression);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Object visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        return executeBlock(stmt.statements, new Environment(environment));
     }
 
-    public void executeBlock(List<Stmt> statements, Environment environment) {
+    public Completion executeBlock(List<Stmt> statements, Environment environment) {
         Environment previous = this.environment;
         try {
             this.environment = new Environment(environment);
 
             for (Stmt statement : statements) {
-                execute(statement);
+                Completion completion = execute(statement);
+                // A break or a return skips the rest of the block, and it's up to the enclosing loop or call to
+                // handle it.
+                if (completion != Completion.NORMAL) return completion;
             }
+
+            return Completion.NORMAL;
         } finally {
             this.environment = previous;
         }
     }
 
     @Override
-    public Object visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Object visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        print(value);
 
-        return null;
+        return Completion.NORMAL;
+    }
+
+    protected void print(Object value) {
+        if (Numbers.isNumber(value)) {
+            output.printNumber(Numbers.toDouble(value));
+        } else {
+            output.print(stringify(value));
+        }
     }
 
     @Override
-    public Object visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
@@ -156,80 +298,343 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
 
         environment.define(value);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Object visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
-            try {
-                execute(stmt.body);
-            } catch (Break b) {
-                break;
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion != Completion.NORMAL) return completion;
+        }
+
+        return Completion.NORMAL;
+    }
+
+    @Override
+    public Completion visitForInStmt(Stmt.ForIn stmt) {
+        Object iterable = evaluate(stmt.iterable);
+        if (!isOwn(stmt.iteratorCache)) stmt.iteratorCache = newInlineCache();
+        if (!isOwn(stmt.nextCache)) stmt.nextCache = newInlineCache();
+        return forIn(stmt.name, iterable, stmt.iterator, stmt.iteratorCache, stmt.next, stmt.nextCache,
+                () -> execute(stmt.body));
+    }
+
+    // The loop variable gets an environment of its own for the whole loop, and each element is written in place into
+    // its slot, so iterating doesn't allocate anything per element besides what the body does.
+    protected Completion forIn(Token name, Object iterable, Token iteratorName, InlineCache iteratorCache,
+                               Token nextName, InlineCache nextCache, Supplier<Completion> body) {
+        LoxCursor cursor;
+        try {
+            cursor = cursor(name, iterable, iteratorName, iteratorCache, nextName, nextCache);
+        } catch (NativeFunction.Failure failure) {
+            throw new RuntimeError(name, failure.getMessage());
+        }
+
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(previous, 1);
+            this.environment.define(null);
+
+            while (hasNext(name, cursor)) {
+                this.environment.assign(0, cursor.next());
+
+                Completion completion = body.get();
+                if (completion == Completion.BREAK) break;
+                if (completion != Completion.NORMAL) return completion;
             }
+
+            return Completion.NORMAL;
+        } finally {
+            this.environment = previous;
+            cursor.close();
         }
+    }
 
-        return null;
+    // Natives report their failures at the site of their call, which for a cursor is the loop.
+    private static boolean hasNext(Token name, LoxCursor cursor) {
+        try {
+            return cursor.hasNext();
+        } catch (NativeFunction.Failure failure) {
+            throw new RuntimeError(name, failure.getMessage());
+        }
+    }
+
+    private LoxCursor cursor(Token name, Object iterable, Token iteratorName, InlineCache iteratorCache, Token nextName,
+                             InlineCache nextCache) {
+        if (iterable instanceof LoxIterable values) return values.cursor();
+
+        // Instances take part through their `iterator()` method, whose result must have a `next()` method that returns
+        // nil once there is nothing left.
+        if (iterable instanceof LoxInstance && !(iterable instanceof LoxClass)) {
+            Object iterator = callProtocolMethod(iteratorName, iteratorCache, iterable);
+            return new LoxCursor() {
+                // The element `next()` returned, until the loop takes it, so that it's only called right before the
+                // body runs again.
+                private Object next;
+                private boolean fetched = false;
+
+                @Override
+                public boolean hasNext() {
+                    if (!fetched) {
+                        next = callProtocolMethod(nextName, nextCache, iterator);
+                        fetched = true;
+                    }
+
+                    return next != null;
+                }
+
+                @Override
+                public Object next() {
+                    hasNext();
+                    fetched = false;
+                    return next;
+                }
+            };
+        }
+
+        throw new RuntimeError(name, "Can only iterate over arrays, maps, files and instances.");
+    }
+
+    private Object callProtocolMethod(Token name, InlineCache cache, Object receiver) {
+        LoxFunction method = methodOf(name, cache, receiver);
+        if (method != null) {
+            LoxInstance instance = (LoxInstance) receiver;
+            return callMethod(name, method, instance, newFrame(method, instance));
+        }
+
+        // Anything else is rare enough to go without a call site of its own.
+        return callGeneric(name, get(name, cache, receiver), new Object[0]);
     }
 
     @Override
-    public Object visitClassStmt(Stmt.Class stmt) {
+    public Completion visitClassStmt(Stmt.Class stmt) {
         Object superclass = null;
-        Environment functionEnvironment = this.environment;
         if (stmt.superclass != null) {
             superclass = evaluate(stmt.superclass);
+        }
+
+        defineClass(stmt.name, superclass, stmt.superclass != null ? stmt.superclass.name : null, stmt.methods);
+
+        return Completion.NORMAL;
+    }
+
+    protected void defineClass(Token name, Object superclass, Token superclassName, List<Stmt.Function> methodDeclarations) {
+        Environment functionEnvironment = this.environment;
+        if (superclassName != null) {
             if (!(superclass instanceof LoxClass)) {
-                throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
+                throw new RuntimeError(superclassName, "Superclass must be a class.");
             }
 
             functionEnvironment = new Environment(functionEnvironment);
             functionEnvironment.define(superclass);
         }
 
-        Map<String, LoxFunction> methods = new HashMap<>();
-        Map<String, LoxFunction> staticMethods = new HashMap<>();
-        Map<String, LoxFunction> getterMethods = new HashMap<>();
+        Map<Symbol, LoxFunction> methods = new HashMap<>();
+        Map<Symbol, LoxFunction> staticMethods = new HashMap<>();
+        Map<Symbol, LoxFunction> getterMethods = new HashMap<>();
 
-        for (Stmt.Function method : stmt.methods) {
-            boolean isInitializer = method.functionType == FunctionType.METHOD && method.name.lexeme.equals("init");
+        for (Stmt.Function method : methodDeclarations) {
+            boolean isInitializer = method.functionType == FunctionType.METHOD && method.name.symbol == Symbol.INIT;
             boolean isParameterless = method.functionType == FunctionType.GETTER;
 
-            LoxFunction function = new LoxFunction(method, functionEnvironment, isInitializer, isParameterless);
+            LoxFunction function = new LoxFunction(method, compileBody(method.body), functionEnvironment, isInitializer, isParameterless);
 
             if (method.functionType == FunctionType.METHOD) {
-                methods.put(method.name.lexeme, function);
+                methods.put(method.name.symbol, function);
             } else if (method.functionType == FunctionType.STATIC_METHOD) {
-                staticMethods.put(method.name.lexeme, function);
+                staticMethods.put(method.name.symbol, function);
             } else if (method.functionType == FunctionType.GETTER) {
-                getterMethods.put(method.name.lexeme, function);
+                getterMethods.put(method.name.symbol, function);
             }
         }
 
-        LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass) superclass, methods, staticMethods, getterMethods);
+        LoxClass klass = new LoxClass(name.lexeme, (LoxClass) superclass, methods, staticMethods, getterMethods);
         this.environment.define(klass);
+    }
 
-        return null;
+    @Override
+    public Completion visitRecordStmt(Stmt.Record stmt) {
+        defineRecord(stmt.name, stmt.fields, stmt.methods);
+
+        return Completion.NORMAL;
+    }
+
+    protected void defineRecord(Token name, List<Token> fieldNames, List<Stmt.Function> methodDeclarations) {
+        Map<Symbol, LoxFunction> methods = new HashMap<>();
+        Map<Symbol, LoxFunction> staticMethods = new HashMap<>();
+        Map<Symbol, LoxFunction> getterMethods = new HashMap<>();
+
+        for (Stmt.Function method : methodDeclarations) {
+            boolean isParameterless = method.functionType == FunctionType.GETTER;
+            LoxFunction function = new LoxFunction(method, compileBody(method.body), this.environment, false, isParameterless);
+
+            if (method.functionType == FunctionType.METHOD) {
+                methods.put(method.name.symbol, function);
+            } else if (method.functionType == FunctionType.STATIC_METHOD) {
+                staticMethods.put(method.name.symbol, function);
+            } else if (method.functionType == FunctionType.GETTER) {
+                getterMethods.put(method.name.symbol, function);
+            }
+        }
+
+        List<Symbol> fields = new ArrayList<>(fieldNames.size());
+        for (Token field : fieldNames) {
+            fields.add(field.symbol);
+        }
+
+        LoxRecord record = new LoxRecord(name.lexeme, fields, methods, staticMethods, getterMethods);
+        this.environment.define(record);
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, this.environment, false, false);
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+        LoxFunction function = new LoxFunction(stmt, compileBody(stmt.body), this.environment, false, false);
         this.environment.define(function);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Object visitBreakStmt(Stmt.Break stmt) {
-        throw new Break();
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall != TailCall.NONE) {
+            Expr.Call call = (Expr.Call) stmt.value;
+            boolean reusableFrame = stmt.tailCall == TailCall.REUSE_FRAME;
+
+            // A method is called with its receiver, as visitCallExpr() does, rather than bound first.
+            if (call.callee instanceof Expr.Get get) {
+                Object object = evaluate(get.object);
+                if (!isOwn(get.inlineCache)) get.inlineCache = newInlineCache();
+                LoxFunction method = methodOf(get.name, get.inlineCache, object);
+                if (method != null) {
+                    return tailCallMethod(call.paren, method, (LoxInstance) object, evaluateArguments(call.arguments),
+                            reusableFrame);
+                }
+
+                return tailCall(callSite(call), get(get.name, get.inlineCache, object),
+                        evaluateArguments(call.arguments), reusableFrame);
+            }
+
+            Object callee = evaluate(call.callee);
+            return tailCall(callSite(call), callee, evaluateArguments(call.arguments), reusableFrame);
+        }
+
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new Return(value);
+        return completeWithReturn(value);
+    }
+
+    private Object[] evaluateArguments(List<Expr> arguments) {
+        Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(arguments.get(i));
+        }
+
+        return values;
+    }
+
+    protected Completion tailCall(LoxCallSite site, Object callee, Object[] arguments, boolean reusableFrame) {
+        if (callee instanceof TailCallable function && arguments.length == function.arity()) {
+            return tailCall(function, function.getReceiver(), arguments, reusableFrame);
+        }
+
+        // Any other callee, and all the errors, are handled by a regular call.
+        return completeWithReturn(callN(site, callee, arguments));
+    }
+
+    protected Completion tailCallMethod(Token paren, LoxFunction method, LoxInstance receiver, Object[] arguments,
+                                        boolean reusableFrame) {
+        if (arguments.length != method.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                    method.arity() + " arguments but got " +
+                    arguments.length + ".");
+        }
+
+        return tailCall(method, receiver, arguments, reusableFrame);
+    }
+
+    private Completion tailCall(TailCallable function, LoxInstance receiver, Object[] arguments, boolean reusableFrame) {
+        tailCallee = function;
+        tailReceiver = receiver;
+        tailArguments = arguments;
+        tailFrameReusable = reusableFrame;
+        return Completion.TAIL_CALL;
+    }
+
+    public Environment newFrame(TailCallable function, LoxInstance receiver) {
+        Environment frame = new Environment(function.getClosure(), function.arity() + 1);
+        if (receiver != null) frame.define(receiver);
+
+        return frame;
+    }
+
+    public Object callFunction(TailCallable function, Environment frame) {
+        return callFunction(function, function.getReceiver(), frame);
+    }
+
+    public Object callMethod(LoxFunction method, LoxInstance receiver, Environment frame) {
+        return callFunction(method, receiver, frame);
+    }
+
+    private Object callFunction(TailCallable function, LoxInstance receiver, Environment frame) {
+        while (true) {
+            Completion completion = executeBody(function.getBody(), frame);
+            if (completion != Completion.TAIL_CALL) return function.result(this, receiver, completion);
+
+            // The body ended with a call in tail position, which we carry on from here, so that the stack doesn't
+            // grow with it.
+            TailCallable callee = tailCallee;
+            LoxInstance calleeReceiver = tailReceiver;
+            Object[] arguments = tailArguments;
+            tailCallee = null;
+            tailReceiver = null;
+            tailArguments = null;
+
+            // If no closure could have captured the frame, and the callee closes over the same environment, the
+            // frame can be reused for the callee.
+            if (tailFrameReusable && callee.getClosure() == function.getClosure()) {
+                frame.clear();
+            } else {
+                frame = new Environment(callee.getClosure(), callee.arity() + 1);
+            }
+
+            receiver = calleeReceiver;
+            if (receiver != null) frame.define(receiver);
+            for (Object argument : arguments) {
+                frame.define(argument);
+            }
+            function = callee;
+        }
+    }
+
+    // The form in which the functions created by this interpreter keep their bodies, which is worked out once per
+    // function rather than on every call. The visitors run the statements as they are.
+    protected List<?> compileBody(List<Stmt> body) {
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Completion executeBody(List<?> body, Environment frame) {
+        return executeBlock((List<Stmt>) body, frame);
+    }
+
+    protected Completion completeWithReturn(Object value) {
+        returnValue = value;
+        return Completion.RETURN;
+    }
+
+    public Object takeReturnValue() {
+        // We clear the value, so that the interpreter doesn't keep it alive after the call is done with it.
+        Object value = returnValue;
+        returnValue = null;
+        return value;
     }
 
     @Override
@@ -251,53 +656,158 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (isArithmetic(expr.operator)) {
+            double value = evaluateNumber(expr);
+            if (hasNonNumber) return takeNonNumber();
+            return Numbers.box(value);
+        }
+
+        if (isComparison(expr.operator)) {
+            double left = evaluateNumber(expr.left);
+            if (hasNonNumber) return binary(expr.operator, takeNonNumber(), evaluate(expr.right));
+            double right = evaluateNumber(expr.right);
+            if (hasNonNumber) return binary(expr.operator, left, takeNonNumber());
+            return compare(expr.operator, left, right);
+        }
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.type) {
+        return binary(expr.operator, left, right);
+    }
+
+    // A string that is extended over and over becomes a rope, so that each concatenation only appends to it.
+    private Object concatenate(Token operator, Object left, String right) {
+        if (left instanceof Rope rope) return rope.append(right);
+
+        String text = concatenated(operator, left);
+        if (text.length() + right.length() < Rope.MIN_LENGTH) return text + right;
+        return Rope.of(text, right);
+    }
+
+    // Numbers are concatenated as the doubles they stand for, as in "1.0", unlike when they are printed.
+    private String concatenated(Token operator, Object value) {
+        if (value == null) throw new RuntimeError(operator, "Operand must be a number.");
+        if (value instanceof Long number) return Double.toString(number);
+        return value.toString();
+    }
+
+    // Evaluates an operand of an arithmetic operator, or of a comparison, without boxing it, so that nested arithmetic
+    // only boxes its final result. A value that turns out not to be a number is kept aside for the caller, which then
+    // takes the boxed path to concatenate strings or to report the error, after evaluating the other operand.
+    protected double evaluateNumber(Expr expr) {
+        if (expr instanceof Expr.Binary binary && isArithmetic(binary.operator)) {
+            double left = evaluateNumber(binary.left);
+            if (hasNonNumber) return unbox(binary(binary.operator, takeNonNumber(), evaluate(binary.right)));
+            double right = evaluateNumber(binary.right);
+            if (hasNonNumber) return unbox(binary(binary.operator, left, takeNonNumber()));
+            return arithmetic(binary.operator, left, right);
+        }
+
+        if (expr instanceof Expr.Grouping grouping) {
+            return evaluateNumber(grouping.expression);
+        }
+
+        if (expr instanceof Expr.Unary unary && unary.operator.type == TokenType.MINUS) {
+            double right = evaluateNumber(unary.right);
+            if (hasNonNumber) return unbox(unary(unary.operator, takeNonNumber()));
+            return -right;
+        }
+
+        if (expr instanceof Expr.Subscript subscript) {
+            Object object = evaluate(subscript.object);
+            double index = evaluateNumber(subscript.index);
+            if (hasNonNumber) return unbox(subscript(subscript.bracket, object, takeNonNumber()));
+            return subscriptNumber(subscript.bracket, object, index);
+        }
+
+        return unbox(evaluate(expr));
+    }
+
+    protected double unbox(Object value) {
+        if (value instanceof Double number) return number;
+        if (value instanceof Long number) return number;
+
+        hasNonNumber = true;
+        nonNumber = value;
+        return Double.NaN;
+    }
+
+    protected Object takeNonNumber() {
+        Object value = nonNumber;
+        hasNonNumber = false;
+        nonNumber = null;
+        return value;
+    }
+
+    protected static boolean isArithmetic(Token operator) {
+        return switch (operator.type) {
+            case MINUS, PLUS, SLASH, STAR -> true;
+            default -> false;
+        };
+    }
+
+    protected static boolean isComparison(Token operator) {
+        return switch (operator.type) {
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    // The arithmetic of binary() on operands that are known to be numbers.
+    protected double arithmetic(Token operator, double left, double right) {
+        switch (operator.type) {
+            case MINUS:
+                return left - right;
+            case PLUS:
+                return left + right;
+            case SLASH:
+                if (right == 0) {
+                    throw new RuntimeError(operator, "Division by zero not allowed.");
+                }
+
+                return left / right;
+            default:
+                return left * right;
+        }
+    }
+
+    protected boolean compare(Token operator, double left, double right) {
+        return switch (operator.type) {
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            default -> left <= right;
+        };
+    }
+
+    protected Object binary(Token operator, Object left, Object right) {
+        switch (operator.type) {
             case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left > (double) right;
             case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left >= (double) right;
             case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left < (double) right;
             case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left <= (double) right;
+                checkNumberOperands(operator, left, right);
+                return compare(operator, Numbers.toDouble(left), Numbers.toDouble(right));
             case BANG_EQUAL:
                 return !isEqual(left, right);
             case EQUAL_EQUAL:
                 return isEqual(left, right);
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left - (double) right;
             case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
-                }
-
-                if (left instanceof String && right instanceof String) {
-                    return left + (String) right;
+                if (Numbers.isNumber(left) && Numbers.isNumber(right)) {
+                    return Numbers.box(Numbers.toDouble(left) + Numbers.toDouble(right));
                 }
 
-                if (left instanceof String || right instanceof String) {
-                    return left.toString() + right.toString();
+                if (Rope.isString(left) || Rope.isString(right)) {
+                    return concatenate(operator, left, concatenated(operator, right));
                 }
 
-                throw new RuntimeError(expr.operator, "Operand must be a number.");
+                throw new RuntimeError(operator, "Operand must be a number.");
+            case MINUS:
             case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                if ((double) right == 0) {
-                    throw new RuntimeError(expr.operator, "Division by zero not allowed.");
-                }
-
-                return (double) left / (double) right;
             case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left * (double) right;
+                checkNumberOperands(operator, left, right);
+                return Numbers.box(arithmetic(operator, Numbers.toDouble(left), Numbers.toDouble(right)));
         }
 
         // Unreachable.
@@ -320,30 +830,68 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
     @Override
     public Object visitSetExpr(Expr.Set expr) {
         Object object = evaluate(expr.object);
-
-        if (!(object instanceof LoxInstance)) {
-            throw new RuntimeError(expr.name, "Only instances have fields.");
-        }
+        checkInstance(expr.name, object);
 
         Object value = evaluate(expr.value);
-        ((LoxInstance) object).set(expr.name, value);
+        if (!isOwn(expr.inlineCache)) expr.inlineCache = newInlineCache();
+        set(expr.name, expr.inlineCache, (LoxInstance) object, value);
 
         return value;
     }
 
+    protected void set(Token name, InlineCache cache, LoxInstance object, Object value) {
+        // Classes have no fields of their own and the ones of records can't change, thus only instances go through the
+        // cache.
+        if (object instanceof LoxClass || object instanceof LoxRecordInstance) {
+            object.set(name, value);
+            return;
+        }
+
+        InlineCache.Entry entry = cache.lookup(null, object.getShape());
+        if (entry == null) {
+            Shape shape = object.getShape();
+            int slot = shape.slotOf(name.symbol);
+            Shape transition = null;
+            if (slot == -1) {
+                transition = shape.withField(name.symbol);
+                slot = transition.size() - 1;
+            }
+
+            entry = new InlineCache.Entry(null, shape, slot, null, transition);
+            cache.add(entry);
+        }
+
+        object.setField(name, entry.slot, entry.transition, value);
+    }
+
+    protected void checkInstance(Token name, Object object) {
+        if (!(object instanceof LoxInstance)) {
+            throw new RuntimeError(name, "Only instances have fields.");
+        }
+    }
+
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        Environment.Location location = locals.get(expr);
+        if (!isOwn(expr.inlineCache)) expr.inlineCache = newInlineCache();
+        return superMethod(locals.get(expr), expr.method, expr.inlineCache);
+    }
 
+    protected Object superMethod(Environment.Location location, Token name, InlineCache cache) {
         LoxClass superclass = (LoxClass) environment.getAt(location);
         LoxInstance object = (LoxInstance) environment.getAt(location.decrementDistance());
-        LoxFunction method = superclass.findMethod(expr.method.lexeme);
 
-        if (method == null) {
-            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
+        InlineCache.Entry entry = cache.lookup(superclass, null);
+        if (entry == null) {
+            LoxFunction method = superclass.findMethod(name.symbol);
+            if (method == null) {
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+            }
+
+            entry = new InlineCache.Entry(superclass, null, -1, method, null);
+            cache.add(entry);
         }
 
-        return method.bind(object);
+        return entry.method.bind(object);
     }
 
     @Override
@@ -361,14 +909,29 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
         return expr.value;
     }
 
+    @Override
+    public Object visitInterpolationExpr(Expr.Interpolation expr) {
+        // Every part is appended straight to the one builder, which starts with a guess of 16 characters per part.
+        StringBuilder text = new StringBuilder(expr.parts.size() * 16);
+        for (Expr part : expr.parts) {
+            appendValue(text, evaluate(part));
+        }
+
+        return text.toString();
+    }
+
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
         Object right = evaluate(expr.right);
 
-        return switch (expr.operator.type) {
+        return unary(expr.operator, right);
+    }
+
+    protected Object unary(Token operator, Object right) {
+        return switch (operator.type) {
             case MINUS -> {
-                checkNumberOperand(expr.operator, right);
-                yield -(double) right;
+                checkNumberOperand(operator, right);
+                yield Numbers.box(-Numbers.toDouble(right));
             }
             case BANG -> !isTruthy(right);
             default -> null;
@@ -381,8 +944,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
         Object expr2 = evaluate(expr.expr2);
         Object expr3 = evaluate(expr.expr3);
 
+        return ternary(expr.operator1, expr.operator2, expr1, expr2, expr3);
+    }
+
+    protected Object ternary(Token operator1, Token operator2, Object expr1, Object expr2, Object expr3) {
         // We support for now only the "x ? y : z" operator.
-        if (expr.operator1.type == QUESTION_MARK && expr.operator2.type == COLON) {
+        if (operator1.type == QUESTION_MARK && operator2.type == COLON) {
             return isTruthy(expr1) ? expr2 : expr3;
         }
 
@@ -391,48 +958,328 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        if (expr.callee instanceof Expr.Get get) {
+            Object object = evaluate(get.object);
+            if (!isOwn(get.inlineCache)) get.inlineCache = newInlineCache();
+            LoxFunction method = methodOf(get.name, get.inlineCache, object);
+            if (method != null) {
+                LoxInstance receiver = (LoxInstance) object;
+                Environment frame = newFrame(method, receiver);
+                for (Expr argument : expr.arguments) {
+                    frame.define(evaluate(argument));
+                }
+
+                return callMethod(expr.paren, method, receiver, frame);
+            }
+
+            return call(callSite(expr), get(get.name, get.inlineCache, object), expr.arguments);
+        }
+
+        return call(callSite(expr), evaluate(expr.callee), expr.arguments);
+    }
+
+    private Object call(LoxCallSite site, Object callee, List<Expr> arguments) {
+        // Java evaluates the arguments of each call from left to right, as Lox does.
+        return switch (arguments.size()) {
+            case 0 -> call0(site, callee);
+            case 1 -> call1(site, callee, evaluate(arguments.get(0)));
+            case 2 -> call2(site, callee, evaluate(arguments.get(0)), evaluate(arguments.get(1)));
+            case 3 -> call3(site, callee, evaluate(arguments.get(0)), evaluate(arguments.get(1)), evaluate(arguments.get(2)));
+            default -> {
+                Object[] values = new Object[arguments.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = evaluate(arguments.get(i));
+                }
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments) {
-            arguments.add(evaluate(argument));
+                yield callN(site, callee, values);
+            }
+        };
+    }
+
+    protected Object call0(LoxCallSite site, Object callee) {
+        return site.call0(this, callee);
+    }
+
+    protected Object call1(LoxCallSite site, Object callee, Object a0) {
+        return site.call1(this, callee, a0);
+    }
+
+    protected Object call2(LoxCallSite site, Object callee, Object a0, Object a1) {
+        return site.call2(this, callee, a0, a1);
+    }
+
+    protected Object call3(LoxCallSite site, Object callee, Object a0, Object a1, Object a2) {
+        return site.call3(this, callee, a0, a1, a2);
+    }
+
+    protected Object callN(LoxCallSite site, Object callee, Object[] arguments) {
+        return site.callN(this, callee, arguments);
+    }
+
+    LoxCallSite newCallSite(Token paren) {
+        return new LoxCallSite(this, paren);
+    }
+
+    // The call site of a call of the classic tree, which is taken over like its inline caches.
+    private LoxCallSite callSite(Expr.Call call) {
+        if (call.callSite == null || call.callSite.owner != this) call.callSite = newCallSite(call.paren);
+        return call.callSite;
+    }
+
+    // The method a call of the property invokes, which the caller passes the instance to instead of binding it, or null
+    // if the property is anything else.
+    protected LoxFunction methodOf(Token name, InlineCache cache, Object object) {
+        if (!(object instanceof LoxInstance instance) || object instanceof LoxClass) return null;
+
+        LoxFunction method = property(name, cache, instance).method;
+        if (method == null || method.isParameterless) return null;
+        return method;
+    }
+
+    // The frame holds the receiver and the arguments of the call, which are evaluated straight into it.
+    protected Object callMethod(Token paren, LoxFunction method, LoxInstance receiver, Environment frame) {
+        int argumentCount = frame.size() - 1;
+        if (argumentCount != method.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                    method.arity() + " arguments but got " +
+                    argumentCount + ".");
         }
 
+        if (callStack == null) return callMethod(method, receiver, frame);
+
+        boolean newSegment = callStack.push(paren);
+        try {
+            if (newSegment) return callStack.onSegment(() -> callMethod(method, receiver, frame));
+            return callMethod(method, receiver, frame);
+        } finally {
+            callStack.pop();
+        }
+    }
+
+    Object callGeneric(Token paren, Object callee, Object[] arguments) {
         if (!(callee instanceof LoxCallable function)) {
-            throw new RuntimeError(expr.paren, "Can only call functions and classes.");
+            throw new RuntimeError(paren, "Can only call functions and classes.");
         }
 
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " +
+        if (arguments.length != function.arity()) {
+            throw new RuntimeError(paren, "Expected " +
                     function.arity() + " arguments but got " +
-                    arguments.size() + ".");
+                    arguments.length + ".");
+        }
+
+        return invokeN(paren, function, arguments);
+    }
+
+    // A call of a function whose arity was already checked. When the depth is tracked, only the calls that start a
+    // segment of the stack pay for a lambda.
+
+    Object invoke0(Token site, LoxCallable function) {
+        if (callStack == null) return function.call0(this);
+
+        boolean newSegment = callStack.push(site);
+        try {
+            if (newSegment) return callStack.onSegment(() -> function.call0(this));
+            return function.call0(this);
+        } finally {
+            callStack.pop();
+        }
+    }
+
+    Object invoke1(Token site, LoxCallable function, Object a0) {
+        if (callStack == null) return function.call1(this, a0);
+
+        boolean newSegment = callStack.push(site);
+        try {
+            if (newSegment) return callStack.onSegment(() -> function.call1(this, a0));
+            return function.call1(this, a0);
+        } finally {
+            callStack.pop();
+        }
+    }
+
+    Object invoke2(Token site, LoxCallable function, Object a0, Object a1) {
+        if (callStack == null) return function.call2(this, a0, a1);
+
+        boolean newSegment = callStack.push(site);
+        try {
+            if (newSegment) return callStack.onSegment(() -> function.call2(this, a0, a1));
+            return function.call2(this, a0, a1);
+        } finally {
+            callStack.pop();
         }
+    }
+
+    Object invoke3(Token site, LoxCallable function, Object a0, Object a1, Object a2) {
+        if (callStack == null) return function.call3(this, a0, a1, a2);
+
+        boolean newSegment = callStack.push(site);
+        try {
+            if (newSegment) return callStack.onSegment(() -> function.call3(this, a0, a1, a2));
+            return function.call3(this, a0, a1, a2);
+        } finally {
+            callStack.pop();
+        }
+    }
+
+    Object invokeN(Token site, LoxCallable function, Object[] arguments) {
+        if (callStack == null) return function.callN(this, arguments);
 
-        return function.call(this, arguments);
+        boolean newSegment = callStack.push(site);
+        try {
+            if (newSegment) return callStack.onSegment(() -> function.callN(this, arguments));
+            return function.callN(this, arguments);
+        } finally {
+            callStack.pop();
+        }
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
         Object object = evaluate(expr.object);
-        if (object instanceof LoxInstance) {
-            Object getResult = ((LoxInstance) object).get(expr.name);
+        if (!isOwn(expr.inlineCache)) expr.inlineCache = newInlineCache();
+
+        return get(expr.name, expr.inlineCache, object);
+    }
+
+    protected Object get(Token name, InlineCache cache, Object object) {
+        if (object instanceof LoxInstance instance) {
+            Object getResult = instance instanceof LoxClass ? instance.get(name) : getProperty(name, cache, instance);
             if (getResult instanceof LoxFunction function && function.isParameterless) {
-                return function.call(this, null);
+                return invoke0(name, function);
             }
 
             return getResult;
         }
 
-        throw new RuntimeError(expr.name, "Only instances have properties.");
+        if (object instanceof LoxArray array) return array.get(name);
+        if (object instanceof LoxMap map) return map.get(name);
+        if (object instanceof LoxFileWriter writer) return writer.get(name);
+        if (object instanceof LoxStore store) return store.get(name);
+        if (object instanceof LoxVector vector) return vector.get(name);
+
+        throw new RuntimeError(name, "Only instances have properties.");
+    }
+
+    private Object getProperty(Token name, InlineCache cache, LoxInstance instance) {
+        InlineCache.Entry entry = property(name, cache, instance);
+        if (entry.method != null) return entry.method.bind(instance);
+        return instance.getField(entry.slot);
+    }
+
+    private InlineCache.Entry property(Token name, InlineCache cache, LoxInstance instance) {
+        InlineCache.Entry entry = cache.lookup(instance.getKlass(), instance.getShape());
+        if (entry == null) {
+            // Fields shadow methods, which shadow getters, as in LoxInstance.get().
+            LoxClass klass = instance.getKlass();
+            int slot = instance.getShape().slotOf(name.symbol);
+            LoxFunction method = null;
+            if (slot == -1) {
+                method = klass.findMethod(name.symbol);
+                if (method == null) method = klass.findGetterMethod(name.symbol);
+                if (method == null) {
+                    throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+                }
+            }
+
+            entry = new InlineCache.Entry(klass, instance.getShape(), slot, method, null);
+            cache.add(entry);
+        }
+
+        return entry;
     }
 
     @Override
     public Object visitLambdaExpr(Expr.Lambda expr) {
-        return new LoxLambda(expr, this.environment);
+        return new LoxLambda(expr, compileBody(expr.body), this.environment);
+    }
+
+    @Override
+    public Object visitArrayExpr(Expr.Array expr) {
+        Object[] elements = new Object[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = evaluate(expr.elements.get(i));
+        }
+
+        return LoxArray.of(elements);
+    }
+
+    @Override
+    public Object visitSubscriptExpr(Expr.Subscript expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        return subscript(expr.bracket, object, index);
+    }
+
+    @Override
+    public Object visitSetSubscriptExpr(Expr.SetSubscript expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        Object value = evaluate(expr.value);
+
+        setSubscript(expr.bracket, object, index, value);
+        return value;
+    }
+
+    protected Object subscript(Token bracket, Object object, Object index) {
+        if (object instanceof LoxMap map) return map.get(index);
+        if (object instanceof LoxVector vector) return Numbers.box(vector.get(checkIndex(bracket, vector.length(), index)));
+
+        LoxArray array = checkArray(bracket, object);
+        return array.get(checkIndex(bracket, array.size(), index));
+    }
+
+    // The element of a numeric array or of a vector is read without boxing it.
+    protected double subscriptNumber(Token bracket, Object object, double index) {
+        if (object instanceof LoxMap map) return unbox(map.get(Numbers.box(index)));
+        if (object instanceof LoxVector vector) return vector.get(checkIndex(bracket, vector.length(), index));
+
+        LoxArray array = checkArray(bracket, object);
+        int at = checkIndex(bracket, array.size(), index);
+        if (array.isNumeric()) return array.getNumber(at);
+
+        return unbox(array.get(at));
+    }
+
+    protected void setSubscript(Token bracket, Object object, Object index, Object value) {
+        if (object instanceof LoxMap map) {
+            map.put(index, value);
+            return;
+        }
+
+        if (object instanceof LoxVector vector) {
+            int at = checkIndex(bracket, vector.length(), index);
+            if (!Numbers.isNumber(value)) throw new RuntimeError(bracket, "Vector elements must be numbers.");
+            vector.set(at, Numbers.toDouble(value));
+            return;
+        }
+
+        LoxArray array = checkArray(bracket, object);
+        array.set(checkIndex(bracket, array.size(), index), value);
+    }
+
+    private LoxArray checkArray(Token bracket, Object object) {
+        if (object instanceof LoxArray array) return array;
+        throw new RuntimeError(bracket, "Only arrays, maps and vectors can be indexed.");
+    }
+
+    private int checkIndex(Token bracket, int size, Object index) {
+        if (!Numbers.isNumber(index)) throw new RuntimeError(bracket, "Array index must be a number.");
+        return checkIndex(bracket, size, Numbers.toDouble(index));
+    }
+
+    private int checkIndex(Token bracket, int size, double index) {
+        if (index != Math.rint(index)) throw new RuntimeError(bracket, "Array index must be a whole number.");
+        if (index < 0 || index >= size) throw new RuntimeError(bracket, "Array index out of bounds.");
+
+        return (int) index;
     }
 
     public static class RuntimeError extends RuntimeException {
-        public final Token token;
+        private static final long serialVersionUID = 1L;
+
+        // Exceptions are serializable, but tokens aren't, and the token only matters to the interpreter that threw it.
+        public final transient Token token;
 
         public RuntimeError(Token token, String message) {
             super(message);
@@ -0,0 +1,98 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.constructs.LoxCallable;
+import com.craftinginterpreters.lox.runtime.constructs.NativeFunction;
+
+// The linkage of a single call of the program, in the same spirit as the call sites bootstrapped by invokedynamic.
+//
+// A site starts unlinked, and its first call links it to the callee it observed: from then on, a call only checks that
+// the callee is the same object and invokes it, since its arity was already checked against the arguments of the site.
+// A different callee relinks the site, and a site that keeps seeing new callees (closures created over and over, for
+// example) ends up linked to the generic call, which checks everything on each invocation.
+//
+// The guard is a plain identity check rather than a MethodHandle guard on a MutableCallSite, since the interpreter can
+// only invoke such a site through its dynamic invoker, which the JIT doesn't inline as it would an invokedynamic.
+public class LoxCallSite {
+
+    private static final int MAX_RELINKS = 8;
+
+    // The interpreter the site belongs to, since the nodes of the classic tree that hold the sites might be run by
+    // others.
+    final Interpreter owner;
+    private final Token site;
+    // Null until the site links and once it goes generic, and a nil callee must not pass the guard then.
+    private LoxCallable target;
+    private boolean generic = false;
+    private int relinks = 0;
+
+    public LoxCallSite(Interpreter owner, Token site) {
+        this.owner = owner;
+        this.site = site;
+    }
+
+    // Natives report their failures without knowing where they were called from, which is only known here.
+
+    public Object call0(Interpreter interpreter, Object callee) {
+        try {
+            if (target != null && callee == target) return interpreter.invoke0(site, target);
+            return relink(interpreter, callee, new Object[0]);
+        } catch (NativeFunction.Failure failure) {
+            throw new Interpreter.RuntimeError(site, failure.getMessage());
+        }
+    }
+
+    public Object call1(Interpreter interpreter, Object callee, Object a0) {
+        try {
+            if (target != null && callee == target) return interpreter.invoke1(site, target, a0);
+            return relink(interpreter, callee, new Object[]{a0});
+        } catch (NativeFunction.Failure failure) {
+            throw new Interpreter.RuntimeError(site, failure.getMessage());
+        }
+    }
+
+    public Object call2(Interpreter interpreter, Object callee, Object a0, Object a1) {
+        try {
+            if (target != null && callee == target) return interpreter.invoke2(site, target, a0, a1);
+            return relink(interpreter, callee, new Object[]{a0, a1});
+        } catch (NativeFunction.Failure failure) {
+            throw new Interpreter.RuntimeError(site, failure.getMessage());
+        }
+    }
+
+    public Object call3(Interpreter interpreter, Object callee, Object a0, Object a1, Object a2) {
+        try {
+            if (target != null && callee == target) return interpreter.invoke3(site, target, a0, a1, a2);
+            return relink(interpreter, callee, new Object[]{a0, a1, a2});
+        } catch (NativeFunction.Failure failure) {
+            throw new Interpreter.RuntimeError(site, failure.getMessage());
+        }
+    }
+
+    public Object callN(Interpreter interpreter, Object callee, Object[] arguments) {
+        try {
+            if (target != null && callee == target) return interpreter.invokeN(site, target, arguments);
+            return relink(interpreter, callee, arguments);
+        } catch (NativeFunction.Failure failure) {
+            throw new Interpreter.RuntimeError(site, failure.getMessage());
+        }
+    }
+
+    private Object relink(Interpreter interpreter, Object callee, Object[] arguments) {
+        if (!generic) link(callee, arguments.length);
+
+        // The call that linked the site, as well as the ones that can't be linked because they fail, take the
+        // generic path, which also reports the errors.
+        return interpreter.callGeneric(site, callee, arguments);
+    }
+
+    private void link(Object callee, int argumentCount) {
+        if (relinks == MAX_RELINKS) {
+            target = null;
+            generic = true;
+        } else if (callee instanceof LoxCallable function && function.arity() == argumentCount) {
+            target = function;
+            relinks++;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.runtime.constructs.NativeFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The native functions of an interpreter, which live in an environment that encloses the globals.
+//
+// The resolver sees them as a scope around the program, so a native is resolved like any global, and a program can
+// still declare a global with the same name, which shadows it. Natives must therefore be defined before the program is
+// resolved, and the library of the interpreter that resolves a program must match the one that runs it.
+public class Natives {
+
+    private final Environment environment = new Environment(null);
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    public void define(NativeFunction function) {
+        Integer index = indexes.get(function.getName());
+        if (index != null) {
+            environment.assignAt(new Environment.Location(0, index), function);
+            return;
+        }
+
+        indexes.put(function.getName(), names.size());
+        names.add(function.getName());
+        environment.define(function);
+    }
+
+    public void define(String name, NativeFunction.Body0 body) {
+        define(NativeFunction.of(name, body));
+    }
+
+    public void define(String name, NativeFunction.Body1 body) {
+        define(NativeFunction.of(name, body));
+    }
+
+    public void define(String name, NativeFunction.Body2 body) {
+        define(NativeFunction.of(name, body));
+    }
+
+    public void define(String name, NativeFunction.Body3 body) {
+        define(NativeFunction.of(name, body));
+    }
+
+    // The names of the natives, in the order of their slots.
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    Environment environment() {
+        return environment;
+    }
+}
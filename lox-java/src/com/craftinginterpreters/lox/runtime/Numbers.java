@@ -0,0 +1,138 @@
+package com.craftinginterpreters.lox.runtime;
+
+// Lox numbers are doubles, but the runtime keeps the whole ones as longs, as long as a double represents them exactly.
+//
+// Arithmetic still runs on doubles, which are exact on such values, so the two representations always agree, and only
+// the boxes change: whole numbers are boxed once per value in a small cache, which covers most counters and indices,
+// and the rest are Longs, which the JIT can often keep unboxed. Every number goes through box(), literals included, so
+// a whole number is never a Double. Anything that looks at a number, like printing, concatenation or equality, goes
+// through toDouble() and behaves as if it were the double it stands for.
+public final class Numbers {
+
+    // 2^53, the largest magnitude up to which every whole number is a double.
+    private static final double MAX_EXACT = 9007199254740992.0;
+
+    // The longest text format() writes: a sign, 15 significant digits, a point and the zeros in front of the digits.
+    static final int MAX_FORMATTED_LENGTH = 24;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1 << 15;
+    private static final Long[] cache = new Long[CACHE_HIGH - CACHE_LOW];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = (long) (i + CACHE_LOW);
+        }
+    }
+
+    private Numbers() {
+    }
+
+    public static Object box(double value) {
+        long whole = (long) value;
+        // Negative zero has no long of its own, and it must keep printing as "-0".
+        if (whole != value || Math.abs(value) > MAX_EXACT || (whole == 0 && 1 / value < 0)) {
+            return value;
+        }
+
+        if (whole >= CACHE_LOW && whole < CACHE_HIGH) return cache[(int) whole - CACHE_LOW];
+        return whole;
+    }
+
+    public static boolean isNumber(Object value) {
+        return value instanceof Double || value instanceof Long;
+    }
+
+    public static double toDouble(Object value) {
+        if (value instanceof Long whole) return whole;
+        return (Double) value;
+    }
+
+    // Whole numbers are printed without a fractional part, whichever way they are stored.
+    public static String format(Object value) {
+        double number = toDouble(value);
+        char[] text = new char[MAX_FORMATTED_LENGTH];
+        int length = format(number, text);
+        if (length >= 0) return new String(text, 0, length);
+
+        String fallback = Double.toString(number);
+        if (fallback.endsWith(".0")) {
+            fallback = fallback.substring(0, fallback.length() - 2);
+        }
+        return fallback;
+    }
+
+    // Appends the number as format(Object) writes it, without the String in between.
+    public static void append(StringBuilder text, double value) {
+        char[] digits = new char[MAX_FORMATTED_LENGTH];
+        int length = format(value, digits);
+        if (length >= 0) {
+            text.append(digits, 0, length);
+        } else {
+            text.append(format(value));
+        }
+    }
+
+    // Writes the number as format(Object) does, without allocating, and returns the length of the text. Only the
+    // numbers Double.toString() writes in plain notation with at most 15 significant digits are handled here, which is
+    // all of them but NaN, the infinities, -0 and the very small and very large ones: for these, -1 is returned.
+    //
+    // Double.toString() writes the shortest decimal that reads back as the same double. With at most 15 significant
+    // digits, two such decimals can't have the same length, so the shortest is the first length that works.
+    static int format(double value, char[] into) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude < 1e7) || (magnitude < 1e-3 && magnitude != 0) || (value == 0 && 1 / value < 0)) return -1;
+
+        int length = 0;
+        if (value < 0) into[length++] = '-';
+
+        long whole = (long) magnitude;
+        if (whole == magnitude) return writeDigits(whole, 0, into, length);
+
+        int wholeDigits = whole == 0 ? 0 : digitCount(whole);
+        for (int decimals = 1; wholeDigits + decimals <= 15; decimals++) {
+            double power = POWERS_OF_TEN[decimals];
+            long scaled = (long) Math.rint(magnitude * power);
+            // The product might be off by one unit, but the division is exact, so it settles which digits read back.
+            for (long digits = scaled - 1; digits <= scaled + 1; digits++) {
+                if (digits / power == magnitude) return writeDigits(digits, decimals, into, length);
+            }
+        }
+
+        return -1;
+    }
+
+    // Writes the digits from right to left, with a point before the last `decimals` of them.
+    private static int writeDigits(long digits, int decimals, char[] into, int offset) {
+        int count = Math.max(digitCount(digits), decimals + 1);
+        int end = offset + count + (decimals > 0 ? 1 : 0);
+
+        int position = end;
+        for (int i = 0; i < count; i++) {
+            if (i == decimals && decimals > 0) into[--position] = '.';
+            into[--position] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+
+        return end;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    // Equality of numbers is the one of their doubles, where 0 and -0 differ and NaN equals itself.
+    public static boolean isEqual(Object a, Object b) {
+        if (a instanceof Long x && b instanceof Long y) return x.longValue() == y.longValue();
+        return Double.valueOf(toDouble(a)).equals(toDouble(b));
+    }
+}
@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox.runtime;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Where `print` writes to.
+//
+// The writer is buffered, instead of flushing every line as System.out does, so it's up to the interpreter to flush it
+// once the program is done or fails. Numbers are formatted straight into the buffer, without going through a String.
+public class Output {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private final char[] number = new char[Numbers.MAX_FORMATTED_LENGTH];
+
+    public Output(Writer writer) {
+        this.writer = writer;
+    }
+
+    public static Output buffered(OutputStream stream) {
+        return new Output(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    void print(String text) {
+        try {
+            writer.write(text);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void printNumber(double value) {
+        int length = Numbers.format(value, number);
+        if (length < 0) {
+            print(Numbers.format(value));
+            return;
+        }
+
+        try {
+            writer.write(number, 0, length);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.ast.Expr;
+import com.craftinginterpreters.lox.ast.FunctionType;
+import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.ast.TailCall;
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.lexer.TokenType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A program that already went through scanning, parsing and resolution, which can be loaded back without running
+// any of those phases again.
+//
+// The image is a compact encoding of the tree written in a single pass, with the resolution of each node right after
+// it. We don't use Java serialization for it: reading the tree back that way took longer than scanning, parsing and
+// resolving the script again, because of the reflection it goes through for every class of the tree.
+public class ProgramImage {
+
+    public static final String RESOURCE_NAME = "program.image";
+
+    // Every image starts with these, and the version is bumped whenever the encoding changes, so that an image is
+    // never misread by a runtime that doesn't know its encoding.
+    private static final int MAGIC = 0x4c4f5849;
+    private static final int VERSION = 3;
+
+    // The tags of the nodes, in the order of the visitor methods. Zero stands for a missing node.
+    private static final int NONE = 0;
+    private static final int ASSIGN = 1;
+    private static final int BINARY = 2;
+    private static final int TERNARY = 3;
+    private static final int CALL = 4;
+    private static final int GET = 5;
+    private static final int GROUPING = 6;
+    private static final int LITERAL = 7;
+    private static final int INTERPOLATION = 8;
+    private static final int LOGICAL = 9;
+    private static final int SET = 10;
+    private static final int SUPER = 11;
+    private static final int THIS = 12;
+    private static final int UNARY = 13;
+    private static final int LAMBDA = 14;
+    private static final int ARRAY = 15;
+    private static final int SUBSCRIPT = 16;
+    private static final int SET_SUBSCRIPT = 17;
+    private static final int VARIABLE = 18;
+    private static final int BLOCK = 19;
+    private static final int CLASS = 20;
+    private static final int EXPRESSION = 21;
+    private static final int FOR_IN = 22;
+    private static final int FUNCTION = 23;
+    private static final int IF = 24;
+    private static final int PRINT = 25;
+    private static final int RECORD = 26;
+    private static final int RETURN = 27;
+    private static final int BREAK = 28;
+    private static final int VAR = 29;
+    private static final int WHILE = 30;
+
+    // The tags of literal values.
+    private static final int NIL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int DOUBLE = 3;
+    private static final int LONG = 4;
+    private static final int STRING = 5;
+
+    private final List<Stmt> statements;
+    private final Map<Expr, Environment.Location> locals;
+
+    public ProgramImage(List<Stmt> statements, Map<Expr, Environment.Location> locals) {
+        this.statements = statements;
+        this.locals = new HashMap<>(locals);
+    }
+
+    public List<Stmt> getStatements() {
+        return statements;
+    }
+
+    public void link(Interpreter interpreter) {
+        // We install the resolved locations directly, in place of running the resolver.
+        for (Map.Entry<Expr, Environment.Location> entry : locals.entrySet()) {
+            Environment.Location location = entry.getValue();
+            interpreter.resolve(entry.getKey(), location.getDistance(), location.getVariableIndex());
+        }
+    }
+
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(output));
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+
+        try {
+            new Encoder(stream).writeStatements(statements);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        stream.flush();
+    }
+
+    public static ProgramImage read(InputStream input) throws IOException {
+        DataInputStream stream = new DataInputStream(new BufferedInputStream(input));
+        if (stream.readInt() != MAGIC) throw new IOException("This is not a program image.");
+
+        int version = stream.readInt();
+        if (version != VERSION) {
+            throw new IOException("The program image has version " + version + ", but this runtime only reads version "
+                    + VERSION + ". Compile the script again with this runtime.");
+        }
+
+        Decoder decoder = new Decoder(stream);
+        List<Stmt> statements = decoder.readStatements();
+        return new ProgramImage(statements, decoder.locals);
+    }
+
+    // Writes each node as its tag followed by its fields. The visitors can't throw checked exceptions, so the
+    // failures of the stream are carried out unchecked.
+    private class Encoder implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+        private final DataOutputStream stream;
+
+        Encoder(DataOutputStream stream) {
+            this.stream = stream;
+        }
+
+        private void writeExpr(Expr expr) {
+            if (expr == null) {
+                writeInt(NONE);
+                return;
+            }
+
+            expr.accept(this);
+
+            // The resolution of a node comes right after it.
+            Environment.Location location = locals.get(expr);
+            writeBoolean(location != null);
+            if (location != null) {
+                writeInt(location.getDistance());
+                writeInt(location.getVariableIndex());
+            }
+        }
+
+        private void writeExprs(List<Expr> exprs) {
+            writeInt(exprs.size());
+            for (Expr expr : exprs) {
+                writeExpr(expr);
+            }
+        }
+
+        private void writeStmt(Stmt stmt) {
+            if (stmt == null) {
+                writeInt(NONE);
+                return;
+            }
+
+            stmt.accept(this);
+        }
+
+        void writeStatements(List<? extends Stmt> stmts) {
+            writeInt(stmts.size());
+            for (Stmt stmt : stmts) {
+                writeStmt(stmt);
+            }
+        }
+
+        private void writeToken(Token token) {
+            if (token == null) {
+                writeInt(-1);
+                return;
+            }
+
+            writeInt(token.type.ordinal());
+            writeString(token.lexeme);
+            writeValue(token.literal);
+            writeInt(token.line);
+            writeBoolean(token.symbol != null);
+        }
+
+        private void writeTokens(List<Token> tokens) {
+            writeInt(tokens.size());
+            for (Token token : tokens) {
+                writeToken(token);
+            }
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeInt(NIL);
+            } else if (value instanceof Boolean bool) {
+                writeInt(bool ? TRUE : FALSE);
+            } else if (value instanceof Double number) {
+                writeInt(DOUBLE);
+                wrap(() -> stream.writeDouble(number));
+            } else if (value instanceof Long number) {
+                writeInt(LONG);
+                wrap(() -> stream.writeLong(number));
+            } else {
+                writeInt(STRING);
+                writeString((String) value);
+            }
+        }
+
+        private void writeInt(int value) {
+            wrap(() -> stream.writeInt(value));
+        }
+
+        private void writeBoolean(boolean value) {
+            wrap(() -> stream.writeBoolean(value));
+        }
+
+        // Not writeUTF(), which is limited to 64 KB.
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            wrap(() -> stream.write(bytes));
+        }
+
+        private void wrap(IOAction action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            writeInt(ASSIGN);
+            writeToken(expr.name);
+            writeExpr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            writeInt(BINARY);
+            writeExpr(expr.left);
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitTernaryExpr(Expr.Ternary expr) {
+            writeInt(TERNARY);
+            writeExpr(expr.expr1);
+            writeToken(expr.operator1);
+            writeExpr(expr.expr2);
+            writeToken(expr.operator2);
+            writeExpr(expr.expr3);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            writeInt(CALL);
+            writeExpr(expr.callee);
+            writeToken(expr.paren);
+            writeExprs(expr.arguments);
+            return null;
+        }
+
+        @Override
+        public Void visitGetExpr(Expr.Get expr) {
+            writeInt(GET);
+            writeExpr(expr.object);
+            writeToken(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            writeInt(GROUPING);
+            writeExpr(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            writeInt(LITERAL);
+            writeValue(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitInterpolationExpr(Expr.Interpolation expr) {
+            writeInt(INTERPOLATION);
+            writeExprs(expr.parts);
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            writeInt(LOGICAL);
+            writeExpr(expr.left);
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitSetExpr(Expr.Set expr) {
+            writeInt(SET);
+            writeExpr(expr.object);
+            writeToken(expr.name);
+            writeExpr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitSuperExpr(Expr.Super expr) {
+            writeInt(SUPER);
+            writeToken(expr.keyword);
+            writeToken(expr.method);
+            return null;
+        }
+
+        @Override
+        public Void visitThisExpr(Expr.This expr) {
+            writeInt(THIS);
+            writeToken(expr.keyword);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            writeInt(UNARY);
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitLambdaExpr(Expr.Lambda expr) {
+            writeInt(LAMBDA);
+            writeTokens(expr.params);
+            writeStatements(expr.body);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayExpr(Expr.Array expr) {
+            writeInt(ARRAY);
+            writeToken(expr.bracket);
+            writeExprs(expr.elements);
+            return null;
+        }
+
+        @Override
+        public Void visitSubscriptExpr(Expr.Subscript expr) {
+            writeInt(SUBSCRIPT);
+            writeExpr(expr.object);
+            writeToken(expr.bracket);
+            writeExpr(expr.index);
+            return null;
+        }
+
+        @Override
+        public Void visitSetSubscriptExpr(Expr.SetSubscript expr) {
+            writeInt(SET_SUBSCRIPT);
+            writeExpr(expr.object);
+            writeToken(expr.bracket);
+            writeExpr(expr.index);
+            writeExpr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            writeInt(VARIABLE);
+            writeToken(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            writeInt(BLOCK);
+            writeStatements(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitClassStmt(Stmt.Class stmt) {
+            writeInt(CLASS);
+            writeToken(stmt.name);
+            writeExpr(stmt.superclass);
+            writeStatements(stmt.methods);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            writeInt(EXPRESSION);
+            writeExpr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitForInStmt(Stmt.ForIn stmt) {
+            writeInt(FOR_IN);
+            writeToken(stmt.name);
+            writeExpr(stmt.iterable);
+            writeStmt(stmt.body);
+            writeToken(stmt.iterator);
+            writeToken(stmt.next);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            writeInt(FUNCTION);
+            writeToken(stmt.name);
+            writeTokens(stmt.params);
+            writeStatements(stmt.body);
+            writeInt(stmt.functionType.ordinal());
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            writeInt(IF);
+            writeExpr(stmt.condition);
+            writeStmt(stmt.thenBranch);
+            writeStmt(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            writeInt(PRINT);
+            writeExpr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitRecordStmt(Stmt.Record stmt) {
+            writeInt(RECORD);
+            writeToken(stmt.name);
+            writeTokens(stmt.fields);
+            writeStatements(stmt.methods);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            writeInt(RETURN);
+            writeToken(stmt.keyword);
+            writeExpr(stmt.value);
+            writeInt(stmt.tailCall.ordinal());
+            return null;
+        }
+
+        @Override
+        public Void visitBreakStmt(Stmt.Break stmt) {
+            writeInt(BREAK);
+            writeToken(stmt.keyword);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            writeInt(VAR);
+            writeToken(stmt.name);
+            writeExpr(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            writeInt(WHILE);
+            writeExpr(stmt.condition);
+            writeStmt(stmt.body);
+            return null;
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    // Reads back what the Encoder wrote, collecting the resolutions on the way.
+    private static class Decoder {
+        private final DataInputStream stream;
+        final Map<Expr, Environment.Location> locals = new HashMap<>();
+
+        Decoder(DataInputStream stream) {
+            this.stream = stream;
+        }
+
+        private Expr readExpr() throws IOException {
+            int tag = stream.readInt();
+            if (tag == NONE) return null;
+
+            Expr expr = switch (tag) {
+                case ASSIGN -> new Expr.Assign(readToken(), readExpr());
+                case BINARY -> new Expr.Binary(readExpr(), readToken(), readExpr());
+                case TERNARY -> new Expr.Ternary(readExpr(), readToken(), readExpr(), readToken(), readExpr());
+                case CALL -> new Expr.Call(readExpr(), readToken(), readExprs());
+                case GET -> new Expr.Get(readExpr(), readToken());
+                case GROUPING -> new Expr.Grouping(readExpr());
+                case LITERAL -> new Expr.Literal(readValue());
+                case INTERPOLATION -> new Expr.Interpolation(readExprs());
+                case LOGICAL -> new Expr.Logical(readExpr(), readToken(), readExpr());
+                case SET -> new Expr.Set(readExpr(), readToken(), readExpr());
+                case SUPER -> new Expr.Super(readToken(), readToken());
+                case THIS -> new Expr.This(readToken());
+                case UNARY -> new Expr.Unary(readToken(), readExpr());
+                case LAMBDA -> new Expr.Lambda(readTokens(), readStatements());
+                case ARRAY -> new Expr.Array(readToken(), readExprs());
+                case SUBSCRIPT -> new Expr.Subscript(readExpr(), readToken(), readExpr());
+                case SET_SUBSCRIPT -> new Expr.SetSubscript(readExpr(), readToken(), readExpr(), readExpr());
+                case VARIABLE -> new Expr.Variable(readToken());
+                default -> throw new IOException("Corrupt program image: unknown expression " + tag + ".");
+            };
+
+            if (stream.readBoolean()) {
+                locals.put(expr, new Environment.Location(stream.readInt(), stream.readInt()));
+            }
+
+            return expr;
+        }
+
+        private List<Expr> readExprs() throws IOException {
+            int size = stream.readInt();
+            List<Expr> exprs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                exprs.add(readExpr());
+            }
+
+            return exprs;
+        }
+
+        private Stmt readStmt() throws IOException {
+            int tag = stream.readInt();
+            return switch (tag) {
+                case NONE -> null;
+                case BLOCK -> new Stmt.Block(readStatements());
+                case CLASS -> new Stmt.Class(readToken(), (Expr.Variable) readExpr(), readStatements());
+                case EXPRESSION -> new Stmt.Expression(readExpr());
+                case FOR_IN -> new Stmt.ForIn(readToken(), readExpr(), readStmt(), readToken(), readToken());
+                case FUNCTION -> new Stmt.Function(readToken(), readTokens(), readStatements(),
+                        FunctionType.values()[stream.readInt()]);
+                case IF -> new Stmt.If(readExpr(), readStmt(), readStmt());
+                case PRINT -> new Stmt.Print(readExpr());
+                case RECORD -> new Stmt.Record(readToken(), readTokens(), readStatements());
+                case RETURN -> {
+                    Stmt.Return stmt = new Stmt.Return(readToken(), readExpr());
+                    stmt.tailCall = TailCall.values()[stream.readInt()];
+                    yield stmt;
+                }
+                case BREAK -> new Stmt.Break(readToken());
+                case VAR -> new Stmt.Var(readToken(), readExpr());
+                case WHILE -> new Stmt.While(readExpr(), readStmt());
+                default -> throw new IOException("Corrupt program image: unknown statement " + tag + ".");
+            };
+        }
+
+        // The lists are typed by their reader, since the methods of classes and records are lists of functions.
+        @SuppressWarnings("unchecked")
+        <T extends Stmt> List<T> readStatements() throws IOException {
+            int size = stream.readInt();
+            List<T> stmts = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                stmts.add((T) readStmt());
+            }
+
+            return stmts;
+        }
+
+        private Token readToken() throws IOException {
+            int type = stream.readInt();
+            if (type == -1) return null;
+
+            String lexeme = readString();
+            Object literal = readValue();
+            int line = stream.readInt();
+            Symbol symbol = stream.readBoolean() ? Symbol.intern(lexeme) : null;
+
+            return new Token(TokenType.values()[type], lexeme, literal, line, symbol);
+        }
+
+        private List<Token> readTokens() throws IOException {
+            int size = stream.readInt();
+            List<Token> tokens = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tokens.add(readToken());
+            }
+
+            return tokens;
+        }
+
+        private Object readValue() throws IOException {
+            int tag = stream.readInt();
+            return switch (tag) {
+                case NIL -> null;
+                case FALSE -> false;
+                case TRUE -> true;
+                // Numbers take the boxes the scanner gives them.
+                case DOUBLE, LONG -> Numbers.box(tag == DOUBLE ? stream.readDouble() : stream.readLong());
+                case STRING -> readString();
+                default -> throw new IOException("Corrupt program image: unknown value " + tag + ".");
+            };
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[stream.readInt()];
+            stream.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.craftinginterpreters.lox.Lox;
 import com.craftinginterpreters.lox.ast.Expr;
 import com.craftinginterpreters.lox.ast.FunctionType;
 import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.ast.TailCall;
 import com.craftinginterpreters.lox.lexer.Token;
 
 import java.util.*;
@@ -17,12 +18,31 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private EnclosingContext currentFunction = EnclosingContext.NONE;
     private EnclosingContext currentWhile = EnclosingContext.NONE;
     private EnclosingContext currentClass = EnclosingContext.NONE;
+    // The tail calls of the function being resolved, and whether any closure inside it could capture its frame.
+    private List<Stmt.Return> currentTailCalls = new ArrayList<>();
+    private boolean currentCapturesFrame = false;
 
     public Resolver(Interpreter interpreter) {
         this.interpreter = interpreter;
     }
 
     public void resolve(List<Stmt> statements) {
+        // The natives are in a scope around the one of the program, as their environment encloses the globals.
+        beginScope();
+        for (String name : interpreter.natives().names()) {
+            scopes.peek().add(true);
+            indexes.peek().put(name, indexes.peek().size());
+        }
+
+        resolveBlock(statements);
+
+        // Unused natives are nothing to warn about.
+        scopes.pop();
+        indexes.pop();
+        usages.pop();
+    }
+
+    private void resolveBlock(List<Stmt> statements) {
         beginScope();
         for (Stmt statement : statements) {
             resolve(statement);
@@ -127,29 +147,57 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveFunction(Stmt.Function function, EnclosingContext context) {
         EnclosingContext enclosingFunction = currentFunction;
         currentFunction = context;
+        List<Stmt.Return> enclosingTailCalls = beginTailCalls();
         beginScope();
+        // The instance of a method is passed along with its arguments, in the first slot of its frame.
+        if (context == EnclosingContext.METHOD || context == EnclosingContext.INITIALIZER) {
+            defineIntrinsicVariable("this");
+        }
         for (Token param : function.params) {
             declare(param);
             define(param);
         }
-        resolve(function.body);
+        resolveBlock(function.body);
         endScope();
+        endTailCalls(enclosingTailCalls);
         currentFunction = enclosingFunction;
     }
 
     private void resolveLambda(Expr.Lambda lambda) {
         EnclosingContext enclosingFunction = currentFunction;
         currentFunction = EnclosingContext.FUNCTION;
+        List<Stmt.Return> enclosingTailCalls = beginTailCalls();
         beginScope();
         for (Token param : lambda.params) {
             declare(param);
             define(param);
         }
-        resolve(lambda.body);
+        resolveBlock(lambda.body);
         endScope();
+        endTailCalls(enclosingTailCalls);
         currentFunction = enclosingFunction;
     }
 
+    private List<Stmt.Return> beginTailCalls() {
+        List<Stmt.Return> enclosingTailCalls = currentTailCalls;
+        currentTailCalls = new ArrayList<>();
+        currentCapturesFrame = false;
+
+        return enclosingTailCalls;
+    }
+
+    private void endTailCalls(List<Stmt.Return> enclosingTailCalls) {
+        // We can only tell whether the frame is captured once the whole body is resolved, since a closure could be
+        // declared after the tail call.
+        for (Stmt.Return tailCall : currentTailCalls) {
+            tailCall.tailCall = currentCapturesFrame ? TailCall.NEW_FRAME : TailCall.REUSE_FRAME;
+        }
+
+        // The function we just left is a closure, which captures the frame of the one enclosing it.
+        currentTailCalls = enclosingTailCalls;
+        currentCapturesFrame = true;
+    }
+
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
@@ -205,6 +253,15 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitInterpolationExpr(Expr.Interpolation expr) {
+        for (Expr part : expr.parts) {
+            resolve(part);
+        }
+
+        return null;
+    }
+
     @Override
     public Void visitLogicalExpr(Expr.Logical expr) {
         resolve(expr.left);
@@ -265,6 +322,32 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            resolve(element);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSubscriptExpr(Expr.Subscript expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetSubscriptExpr(Expr.SetSubscript expr) {
+        resolve(expr.value);
+        resolve(expr.object);
+        resolve(expr.index);
+
+        return null;
+    }
+
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
         if (!indexes.isEmpty()) {
@@ -287,7 +370,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
         beginScope();
-        resolve(stmt.statements);
+        resolveBlock(stmt.statements);
         endScope();
 
         return null;
@@ -300,6 +383,25 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForInStmt(Stmt.ForIn stmt) {
+        resolve(stmt.iterable);
+
+        // The loop variable lives in a scope of its own, which wraps the body.
+        beginScope();
+        declare(stmt.name);
+        define(stmt.name);
+
+        EnclosingContext enclosingWhile = currentWhile;
+        currentWhile = EnclosingContext.WHILE;
+        resolve(stmt.body);
+        currentWhile = enclosingWhile;
+
+        endScope();
+
+        return null;
+    }
+
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
         EnclosingContext enclosingClass = currentClass;
@@ -320,12 +422,6 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
 
         for (Stmt.Function method : stmt.methods) {
-            // Only for non-static methods, we have to define an extra scope which contains the `this`.
-            if (method.functionType != FunctionType.STATIC_METHOD) {
-                beginScope();
-                defineIntrinsicVariable("this");
-            }
-
             EnclosingContext enclosingFunction = EnclosingContext.METHOD;
             if (method.name.lexeme.equals("init")) {
                 enclosingFunction = EnclosingContext.INITIALIZER;
@@ -334,10 +430,6 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             }
 
             resolveFunction(method, enclosingFunction);
-
-            if (method.functionType != FunctionType.STATIC_METHOD) {
-                endScope();
-            }
         }
 
         if (stmt.superclass != null) {
@@ -349,6 +441,40 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitRecordStmt(Stmt.Record stmt) {
+        EnclosingContext enclosingClass = currentClass;
+        currentClass = EnclosingContext.CLASS;
+
+        declare(stmt.name);
+        define(stmt.name);
+
+        Set<String> fields = new HashSet<>();
+        for (Token field : stmt.fields) {
+            if (!fields.add(field.lexeme)) {
+                Lox.error(field, "Already a field with this name in this record.");
+            }
+        }
+
+        for (Stmt.Function method : stmt.methods) {
+            // The fields are all set by the record itself when it's created, and they can't change afterwards.
+            if (method.name.lexeme.equals("init")) {
+                Lox.error(method.name, "A record can't have an initializer.");
+            }
+
+            EnclosingContext enclosingFunction = EnclosingContext.METHOD;
+            if (method.functionType == FunctionType.STATIC_METHOD) {
+                enclosingFunction = EnclosingContext.STATIC_METHOD;
+            }
+
+            resolveFunction(method, enclosingFunction);
+        }
+
+        currentClass = enclosingClass;
+
+        return null;
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
         declare(stmt.name);
@@ -400,6 +526,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             }
 
             resolve(stmt.value);
+
+            // Nothing is left to do in a function after returning, so returning a call is always a tail call.
+            if (stmt.value instanceof Expr.Call && currentFunction != EnclosingContext.NONE) {
+                currentTailCalls.add(stmt);
+            }
         }
 
         return null;
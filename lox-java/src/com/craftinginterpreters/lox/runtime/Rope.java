@@ -0,0 +1,67 @@
+package com.craftinginterpreters.lox.runtime;
+
+// A Lox string built by concatenation, which appends in amortized constant time instead of copying both operands.
+//
+// A rope is a prefix of a buffer, which the ropes extending it share: appending to the rope that ends where the buffer
+// ends only grows the buffer, and the new rope is just a longer prefix of it. The ropes built by a loop like
+// `s = s + x` are all prefixes of a single buffer, so the loop takes linear time overall. Appending to any other rope
+// copies its prefix to a buffer of its own first, as the end of the shared buffer now belongs to a different string.
+//
+// A rope is turned into a String only when the program looks at it, by printing it or comparing it for example. Every
+// place that does so must see it through flatten(), after which the rope is indistinguishable from the String.
+public final class Rope {
+
+    // Concatenations shorter than this simply build a String, which is cheaper than a rope at that size.
+    static final int MIN_LENGTH = 64;
+
+    private final StringBuilder buffer;
+    private final int length;
+    private String flat;
+
+    private Rope(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    static Rope of(String left, String right) {
+        StringBuilder buffer = new StringBuilder(Math.max(2 * (left.length() + right.length()), 16));
+        buffer.append(left).append(right);
+        return new Rope(buffer, buffer.length());
+    }
+
+    Rope append(String text) {
+        StringBuilder target = buffer;
+        if (target.length() != length) {
+            target = new StringBuilder(2 * (length + text.length()));
+            target.append(buffer, 0, length);
+        }
+
+        target.append(text);
+        return new Rope(target, length + text.length());
+    }
+
+    public static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // The String a value stands for if it's a rope, or the value itself otherwise.
+    public static Object flatten(Object value) {
+        if (value instanceof Rope rope) return rope.toString();
+        return value;
+    }
+
+    // Appends the text of the rope, without flattening it.
+    void appendTo(StringBuilder text) {
+        if (flat != null) {
+            text.append(flat);
+        } else {
+            text.append(buffer, 0, length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) flat = buffer.substring(0, length);
+        return flat;
+    }
+}
@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox.runtime;
+
+// The kernels as plain loops, which the JIT still unrolls, and vectorizes where it can prove it's safe to.
+final class ScalarFloat64Kernels implements Float64Kernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    @Override
+    public void mul(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] *= b[i];
+        }
+    }
+
+    @Override
+    public void fma(double[] a, double[] b, double[] c, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] = Math.fma(a[i], b[i], c[i]);
+        }
+    }
+
+    @Override
+    public void scale(double[] a, double factor, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double min(double[] a, int length) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            min = Math.min(min, a[i]);
+        }
+
+        return min;
+    }
+
+    @Override
+    public double max(double[] a, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            max = Math.max(max, a[i]);
+        }
+
+        return max;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        double dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot = Math.fma(a[i], b[i], dot);
+        }
+
+        return dot;
+    }
+}
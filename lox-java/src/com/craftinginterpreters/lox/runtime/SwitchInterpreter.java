@@ -0,0 +1,375 @@
+package com.craftinginterpreters.lox.runtime;
+
+import com.craftinginterpreters.lox.ast.TailCall;
+import com.craftinginterpreters.lox.ast.records.AstConverter;
+import com.craftinginterpreters.lox.ast.records.Expr;
+import com.craftinginterpreters.lox.ast.records.Stmt;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.lexer.TokenType;
+import com.craftinginterpreters.lox.runtime.constructs.LoxArray;
+import com.craftinginterpreters.lox.runtime.constructs.LoxFunction;
+import com.craftinginterpreters.lox.runtime.constructs.LoxInstance;
+import com.craftinginterpreters.lox.runtime.constructs.LoxLambda;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// An interpreter that evaluates the record-based AST through exhaustive pattern matching switches, instead of the
+// double dispatch of the visitors.
+//
+// The program is still scanned, parsed and resolved as a classic AST, which is converted to records right before
+// running it. The runtime constructs keep referring to the classic declarations, and the converter maps them back to
+// their records whenever they are executed.
+public final class SwitchInterpreter extends Interpreter {
+
+    private final AstConverter converter = new AstConverter(this::newInlineCache, this::newCallSite);
+    private final Map<Expr, Environment.Location> recordLocals = new IdentityHashMap<>();
+
+    @Override
+    public void interpret(List<com.craftinginterpreters.lox.ast.Stmt> statements) {
+        List<Stmt> program = converter.toRecords(statements);
+        linkLocals();
+
+        try {
+            onProgramStack(() -> {
+                for (Stmt stmt : program) {
+                    if (stmt != null) {
+                        execute(stmt);
+                    }
+                }
+
+                return null;
+            });
+        } catch (RuntimeError error) {
+            reportRuntimeError(error);
+        } finally {
+            flushOutput();
+        }
+    }
+
+    @Override
+    public void interpret(com.craftinginterpreters.lox.ast.Expr expression) {
+        Expr program = converter.toRecord(expression);
+        linkLocals();
+
+        try {
+            Object value = onProgramStack(() -> evaluate(program));
+            print(value);
+        } catch (RuntimeError error) {
+            reportRuntimeError(error);
+        } finally {
+            flushOutput();
+        }
+    }
+
+    private void linkLocals() {
+        // The resolver ran on the classic tree, so we move each resolved location to the record of its expression.
+        for (Map.Entry<com.craftinginterpreters.lox.ast.Expr, Environment.Location> entry : resolutions().entrySet()) {
+            recordLocals.put(converter.toRecord(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Override
+    public Completion execute(com.craftinginterpreters.lox.ast.Stmt stmt) {
+        return execute(converter.toRecord(stmt));
+    }
+
+    @Override
+    public Object evaluate(com.craftinginterpreters.lox.ast.Expr expr) {
+        return evaluate(converter.toRecord(expr));
+    }
+
+    @Override
+    public Completion executeBlock(List<com.craftinginterpreters.lox.ast.Stmt> statements, Environment environment) {
+        return executeRecords(converter.toRecords(statements), environment);
+    }
+
+    // Functions keep the records of their body, so that calling them doesn't go through the converter.
+    @Override
+    protected List<?> compileBody(List<com.craftinginterpreters.lox.ast.Stmt> body) {
+        return converter.toRecords(body);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Completion executeBody(List<?> body, Environment frame) {
+        return executeRecords((List<Stmt>) body, frame);
+    }
+
+    // Both block variants erase to the same signature, hence the different name.
+    private Completion executeRecords(List<Stmt> statements, Environment environment) {
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(environment);
+
+            for (Stmt statement : statements) {
+                Completion completion = execute(statement);
+                if (completion != Completion.NORMAL) return completion;
+            }
+
+            return Completion.NORMAL;
+        } finally {
+            this.environment = previous;
+        }
+    }
+
+    public Completion execute(Stmt stmt) {
+        return switch (stmt) {
+            case Stmt.Block s -> executeRecords(s.statements(), new Environment(environment));
+            case Stmt.Class s -> {
+                Object superclass = null;
+                if (s.superclass() != null) {
+                    superclass = evaluate(s.superclass());
+                }
+
+                List<com.craftinginterpreters.lox.ast.Stmt.Function> methods = new ArrayList<>(s.methods().size());
+                for (Stmt.Function method : s.methods()) {
+                    methods.add((com.craftinginterpreters.lox.ast.Stmt.Function) converter.toClassic(method));
+                }
+
+                defineClass(s.name(), superclass, s.superclass() != null ? s.superclass().name() : null, methods);
+                yield Completion.NORMAL;
+            }
+            case Stmt.Record s -> {
+                List<com.craftinginterpreters.lox.ast.Stmt.Function> methods = new ArrayList<>(s.methods().size());
+                for (Stmt.Function method : s.methods()) {
+                    methods.add((com.craftinginterpreters.lox.ast.Stmt.Function) converter.toClassic(method));
+                }
+
+                defineRecord(s.name(), s.fields(), methods);
+                yield Completion.NORMAL;
+            }
+            case Stmt.Expression s -> {
+                evaluate(s.expression());
+                yield Completion.NORMAL;
+            }
+            case Stmt.ForIn s -> forIn(s.name(), evaluate(s.iterable()), s.iterator(), s.iteratorCache(), s.next(),
+                    s.nextCache(), () -> execute(s.body()));
+            case Stmt.Function s -> {
+                com.craftinginterpreters.lox.ast.Stmt.Function declaration =
+                        (com.craftinginterpreters.lox.ast.Stmt.Function) converter.toClassic(s);
+                environment.define(new LoxFunction(declaration, s.body(), environment, false, false));
+                yield Completion.NORMAL;
+            }
+            case Stmt.If s -> {
+                if (isTruthy(evaluate(s.condition()))) {
+                    yield execute(s.thenBranch());
+                } else if (s.elseBranch() != null) {
+                    yield execute(s.elseBranch());
+                }
+
+                yield Completion.NORMAL;
+            }
+            case Stmt.Print s -> {
+                print(evaluate(s.expression()));
+                yield Completion.NORMAL;
+            }
+            case Stmt.Return s -> {
+                if (s.tailCall() != TailCall.NONE) {
+                    Expr.Call call = (Expr.Call) s.value();
+                    boolean reusableFrame = s.tailCall() == TailCall.REUSE_FRAME;
+
+                    if (call.callee() instanceof Expr.Get get) {
+                        Object object = evaluate(get.object());
+                        LoxFunction method = methodOf(get.name(), get.inlineCache(), object);
+                        if (method != null) {
+                            yield tailCallMethod(call.paren(), method, (LoxInstance) object,
+                                    evaluateArguments(call.arguments()), reusableFrame);
+                        }
+
+                        yield tailCall(call.callSite(), get(get.name(), get.inlineCache(), object),
+                                evaluateArguments(call.arguments()), reusableFrame);
+                    }
+
+                    Object callee = evaluate(call.callee());
+                    yield tailCall(call.callSite(), callee, evaluateArguments(call.arguments()), reusableFrame);
+                }
+
+                yield completeWithReturn(s.value() != null ? evaluate(s.value()) : null);
+            }
+            case Stmt.Break s -> Completion.BREAK;
+            case Stmt.Var s -> {
+                environment.define(s.initializer() != null ? evaluate(s.initializer()) : null);
+                yield Completion.NORMAL;
+            }
+            case Stmt.While s -> {
+                while (isTruthy(evaluate(s.condition()))) {
+                    Completion completion = execute(s.body());
+                    if (completion == Completion.BREAK) break;
+                    if (completion != Completion.NORMAL) yield completion;
+                }
+
+                yield Completion.NORMAL;
+            }
+        };
+    }
+
+    private Object call(LoxCallSite site, Object callee, List<Expr> arguments) {
+        // Java evaluates the arguments of each call from left to right, as Lox does.
+        return switch (arguments.size()) {
+            case 0 -> call0(site, callee);
+            case 1 -> call1(site, callee, evaluate(arguments.get(0)));
+            case 2 -> call2(site, callee, evaluate(arguments.get(0)), evaluate(arguments.get(1)));
+            case 3 -> call3(site, callee, evaluate(arguments.get(0)), evaluate(arguments.get(1)), evaluate(arguments.get(2)));
+            default -> {
+                Object[] values = new Object[arguments.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = evaluate(arguments.get(i));
+                }
+
+                yield callN(site, callee, values);
+            }
+        };
+    }
+
+    private Object[] evaluateArguments(List<Expr> arguments) {
+        Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(arguments.get(i));
+        }
+
+        return values;
+    }
+
+    private double evaluateNumber(Expr expr) {
+        return switch (expr) {
+            case Expr.Binary e when isArithmetic(e.operator()) -> {
+                double left = evaluateNumber(e.left());
+                if (hasNonNumber) yield unbox(binary(e.operator(), takeNonNumber(), evaluate(e.right())));
+                double right = evaluateNumber(e.right());
+                if (hasNonNumber) yield unbox(binary(e.operator(), left, takeNonNumber()));
+                yield arithmetic(e.operator(), left, right);
+            }
+            case Expr.Grouping e -> evaluateNumber(e.expression());
+            case Expr.Unary e when e.operator().type == TokenType.MINUS -> {
+                double right = evaluateNumber(e.right());
+                if (hasNonNumber) yield unbox(unary(e.operator(), takeNonNumber()));
+                yield -right;
+            }
+            case Expr.Subscript e -> {
+                Object object = evaluate(e.object());
+                double index = evaluateNumber(e.index());
+                if (hasNonNumber) yield unbox(subscript(e.bracket(), object, takeNonNumber()));
+                yield subscriptNumber(e.bracket(), object, index);
+            }
+            default -> unbox(evaluate(expr));
+        };
+    }
+
+    public Object evaluate(Expr expr) {
+        return switch (expr) {
+            case Expr.Assign e -> {
+                Object value = evaluate(e.value());
+
+                Environment.Location location = recordLocals.get(e);
+                if (location != null) {
+                    environment.assignAt(location, value);
+                }
+
+                yield value;
+            }
+            case Expr.Binary e when isArithmetic(e.operator()) -> {
+                double value = evaluateNumber(e);
+                if (hasNonNumber) yield takeNonNumber();
+                yield Numbers.box(value);
+            }
+            case Expr.Binary e when isComparison(e.operator()) -> {
+                double left = evaluateNumber(e.left());
+                if (hasNonNumber) yield binary(e.operator(), takeNonNumber(), evaluate(e.right()));
+                double right = evaluateNumber(e.right());
+                if (hasNonNumber) yield binary(e.operator(), left, takeNonNumber());
+                yield compare(e.operator(), left, right);
+            }
+            case Expr.Binary e -> {
+                Object left = evaluate(e.left());
+                Object right = evaluate(e.right());
+
+                yield binary(e.operator(), left, right);
+            }
+            case Expr.Ternary e -> {
+                Object expr1 = evaluate(e.expr1());
+                Object expr2 = evaluate(e.expr2());
+                Object expr3 = evaluate(e.expr3());
+
+                yield ternary(e.operator1(), e.operator2(), expr1, expr2, expr3);
+            }
+            case Expr.Call e when e.callee() instanceof Expr.Get get -> {
+                Object object = evaluate(get.object());
+                LoxFunction method = methodOf(get.name(), get.inlineCache(), object);
+                if (method != null) {
+                    LoxInstance receiver = (LoxInstance) object;
+                    Environment frame = newFrame(method, receiver);
+                    for (Expr argument : e.arguments()) {
+                        frame.define(evaluate(argument));
+                    }
+
+                    yield callMethod(e.paren(), method, receiver, frame);
+                }
+
+                yield call(e.callSite(), get(get.name(), get.inlineCache(), object), e.arguments());
+            }
+            case Expr.Call e -> call(e.callSite(), evaluate(e.callee()), e.arguments());
+            case Expr.Get e -> get(e.name(), e.inlineCache(), evaluate(e.object()));
+            case Expr.Grouping e -> evaluate(e.expression());
+            case Expr.Literal e -> e.value();
+            case Expr.Interpolation e -> {
+                StringBuilder text = new StringBuilder(e.parts().size() * 16);
+                for (Expr part : e.parts()) {
+                    appendValue(text, evaluate(part));
+                }
+
+                yield text.toString();
+            }
+            case Expr.Logical e -> {
+                Object left = evaluate(e.left());
+
+                if (e.operator().type == TokenType.OR) {
+                    if (isTruthy(left)) yield left;
+                } else {
+                    if (!isTruthy(left)) yield left;
+                }
+
+                yield evaluate(e.right());
+            }
+            case Expr.Set e -> {
+                Object object = evaluate(e.object());
+                checkInstance(e.name(), object);
+
+                Object value = evaluate(e.value());
+                set(e.name(), e.inlineCache(), (LoxInstance) object, value);
+
+                yield value;
+            }
+            case Expr.Super e -> superMethod(recordLocals.get(e), e.method(), e.inlineCache());
+            case Expr.This e -> environment.getAt(recordLocals.get(e));
+            case Expr.Unary e -> unary(e.operator(), evaluate(e.right()));
+            case Expr.Lambda e -> new LoxLambda((com.craftinginterpreters.lox.ast.Expr.Lambda) converter.toClassic(e), e.body(),
+                    environment);
+            case Expr.Array e -> {
+                Object[] elements = new Object[e.elements().size()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = evaluate(e.elements().get(i));
+                }
+
+                yield LoxArray.of(elements);
+            }
+            case Expr.Subscript e -> {
+                Object object = evaluate(e.object());
+                Object index = evaluate(e.index());
+
+                yield subscript(e.bracket(), object, index);
+            }
+            case Expr.SetSubscript e -> {
+                Object object = evaluate(e.object());
+                Object index = evaluate(e.index());
+                Object value = evaluate(e.value());
+
+                setSubscript(e.bracket(), object, index, value);
+                yield value;
+            }
+            case Expr.Variable e -> environment.getAt(recordLocals.get(e));
+        };
+    }
+}
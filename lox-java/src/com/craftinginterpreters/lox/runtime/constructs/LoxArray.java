@@ -0,0 +1,229 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+import com.craftinginterpreters.lox.runtime.Rope;
+
+import java.util.Arrays;
+import java.util.Set;
+
+// A growable array of Lox values.
+//
+// As long as all of its elements are numbers, they are stored unboxed in a double[], and the array switches to an
+// Object[] for good the first time it holds anything else. Indices are checked by the interpreter, which knows where
+// the access happens, so the accessors here assume they are in bounds.
+public final class LoxArray implements LoxIterable, LoxContainer {
+
+    private static final Symbol LENGTH = Symbol.intern("length");
+    private static final Symbol APPEND = Symbol.intern("append");
+    private static final Symbol SLICE = Symbol.intern("slice");
+    private static final Symbol SORT = Symbol.intern("sort");
+
+    private double[] numbers;
+    private Object[] values;
+    private int size;
+    // The methods of the array, bound to it the first time the program reads them, so that a call in a loop doesn't
+    // allocate a function each time around.
+    private NativeFunction appendMethod;
+    private NativeFunction sliceMethod;
+    private NativeFunction sortMethod;
+
+    private LoxArray(double[] numbers, Object[] values, int size) {
+        this.numbers = numbers;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static LoxArray of(Object[] elements) {
+        double[] numbers = new double[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            if (!Numbers.isNumber(elements[i])) return new LoxArray(null, elements, elements.length);
+            numbers[i] = Numbers.toDouble(elements[i]);
+        }
+
+        return new LoxArray(numbers, null, elements.length);
+    }
+
+    public static LoxArray ofNumbers(double[] numbers) {
+        return new LoxArray(numbers, null, numbers.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNumeric() {
+        return numbers != null;
+    }
+
+    public Object get(int index) {
+        if (numbers != null) return Numbers.box(numbers[index]);
+        return values[index];
+    }
+
+    // Only valid while the array is numeric.
+    public double getNumber(int index) {
+        return numbers[index];
+    }
+
+    public void set(int index, Object value) {
+        if (numbers != null) {
+            if (Numbers.isNumber(value)) {
+                numbers[index] = Numbers.toDouble(value);
+                return;
+            }
+
+            generalize();
+        }
+
+        values[index] = value;
+    }
+
+    public void append(Object value) {
+        if (numbers != null) {
+            if (Numbers.isNumber(value)) {
+                if (size == numbers.length) numbers = Arrays.copyOf(numbers, Math.max(8, size * 2));
+                numbers[size++] = Numbers.toDouble(value);
+                return;
+            }
+
+            generalize();
+        }
+
+        if (size == values.length) values = Arrays.copyOf(values, Math.max(8, size * 2));
+        values[size++] = value;
+    }
+
+    private void generalize() {
+        values = new Object[Math.max(8, numbers.length)];
+        for (int i = 0; i < size; i++) {
+            values[i] = Numbers.box(numbers[i]);
+        }
+        numbers = null;
+    }
+
+    // A cursor over the elements, which sees the ones appended while it runs.
+    @Override
+    public LoxCursor cursor() {
+        return new LoxCursor() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Object next() {
+                return get(index++);
+            }
+        };
+    }
+
+    public LoxArray slice(int from, int to) {
+        if (numbers != null) return new LoxArray(Arrays.copyOfRange(numbers, from, to), null, to - from);
+        return new LoxArray(null, Arrays.copyOfRange(values, from, to), to - from);
+    }
+
+    public void sort() {
+        if (numbers != null) {
+            Arrays.sort(numbers, 0, size);
+            return;
+        }
+
+        boolean allNumbers = true;
+        boolean allStrings = true;
+        for (int i = 0; i < size; i++) {
+            allNumbers &= Numbers.isNumber(values[i]);
+            allStrings &= Rope.isString(values[i]);
+        }
+
+        if (allNumbers) {
+            Arrays.sort(values, 0, size, (a, b) -> Double.compare(Numbers.toDouble(a), Numbers.toDouble(b)));
+        } else if (allStrings) {
+            Arrays.sort(values, 0, size, (a, b) -> a.toString().compareTo(b.toString()));
+        } else {
+            throw new NativeFunction.Failure("Can only sort an array of numbers or an array of strings.");
+        }
+    }
+
+    // The properties of arrays, which are the same for all of them.
+    public Object get(Token name) {
+        if (name.symbol == LENGTH) return Numbers.box(size);
+
+        if (name.symbol == APPEND) {
+            if (appendMethod == null) {
+                appendMethod = NativeFunction.of("append", (interpreter, value) -> {
+                    append(value);
+                    return null;
+                });
+            }
+            return appendMethod;
+        }
+
+        if (name.symbol == SLICE) {
+            if (sliceMethod == null) {
+                sliceMethod = NativeFunction.of("slice", (interpreter, from, to) -> {
+                    int start = bound(from);
+                    int end = bound(to);
+                    if (start > end) throw new NativeFunction.Failure("Start index must not be after the end index.");
+
+                    return slice(start, end);
+                });
+            }
+            return sliceMethod;
+        }
+
+        if (name.symbol == SORT) {
+            if (sortMethod == null) {
+                sortMethod = NativeFunction.of("sort", interpreter -> {
+                    sort();
+                    return null;
+                });
+            }
+            return sortMethod;
+        }
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    // A whole number between 0 and the size of the array, both included.
+    private int bound(Object value) {
+        if (!Numbers.isNumber(value)) throw new NativeFunction.Failure("Index must be a number.");
+
+        double index = Numbers.toDouble(value);
+        if (index != Math.rint(index) || index < 0 || index > size) {
+            throw new NativeFunction.Failure("Array index out of bounds.");
+        }
+
+        return (int) index;
+    }
+
+    @Override
+    public void appendTo(StringBuilder text, Set<LoxContainer> enclosing) {
+        if (!enclosing.add(this)) {
+            text.append("[...]");
+            return;
+        }
+
+        text.append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(", ");
+
+            Object value = get(i);
+            Interpreter.appendValue(text, value, enclosing);
+        }
+        text.append(']');
+
+        enclosing.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        Interpreter.appendValue(text, this);
+        return text.toString();
+    }
+}
@@ -2,6 +2,7 @@ package com.craftinginterpreters.lox.runtime.constructs;
 
 import com.craftinginterpreters.lox.runtime.Interpreter;
 
+import java.util.Arrays;
 import java.util.List;
 
 public interface LoxCallable {
@@ -9,4 +10,27 @@ public interface LoxCallable {
     int arity();
 
     Object call(Interpreter interpreter, List<Object> arguments);
+
+    // The interpreter calls through these entry points, specialized on the number of arguments, so that it doesn't have
+    // to collect the arguments in a list. They all end up in call() by default, thus a callable only overrides the ones
+    // it can run faster.
+    default Object call0(Interpreter interpreter) {
+        return callN(interpreter, new Object[0]);
+    }
+
+    default Object call1(Interpreter interpreter, Object a0) {
+        return callN(interpreter, new Object[]{a0});
+    }
+
+    default Object call2(Interpreter interpreter, Object a0, Object a1) {
+        return callN(interpreter, new Object[]{a0, a1});
+    }
+
+    default Object call3(Interpreter interpreter, Object a0, Object a1, Object a2) {
+        return callN(interpreter, new Object[]{a0, a1, a2});
+    }
+
+    default Object callN(Interpreter interpreter, Object[] arguments) {
+        return call(interpreter, Arrays.asList(arguments));
+    }
 }
@@ -0,0 +1,89 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+// The bytes of a file, read lazily in chunks of a given size as a for-in loop walks through them. Each chunk is an
+// array of numbers between 0 and 255, which is only shorter than the size at the end of the file.
+public final class LoxChunks implements LoxIterable {
+
+    private final Path path;
+    private final int size;
+
+    public LoxChunks(Path path, int size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    @Override
+    public LoxCursor cursor() {
+        FileChannel channel = LoxLines.open(path);
+
+        return new LoxCursor() {
+            // The same buffer takes every chunk, while each chunk gets an array of its own, which the script can keep.
+            private final ByteBuffer bytes = ByteBuffer.allocate(size);
+            private LoxArray next;
+            private boolean closed = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !closed) next = readChunk();
+                return next != null;
+            }
+
+            @Override
+            public Object next() {
+                hasNext();
+                LoxArray chunk = next;
+                next = null;
+                return chunk;
+            }
+
+            private LoxArray readChunk() {
+                bytes.clear();
+                try {
+                    // A channel can read less than asked before the end of the file, so we read until the chunk is full.
+                    int read = 0;
+                    while (bytes.hasRemaining() && read != -1) {
+                        read = channel.read(bytes);
+                    }
+                } catch (IOException e) {
+                    close();
+                    throw new NativeFunction.Failure("Can't read file: " + e.getMessage());
+                }
+
+                bytes.flip();
+                if (!bytes.hasRemaining()) {
+                    close();
+                    return null;
+                }
+
+                double[] numbers = new double[bytes.remaining()];
+                for (int i = 0; i < numbers.length; i++) {
+                    numbers[i] = bytes.get(i) & 0xff;
+                }
+
+                return LoxArray.ofNumbers(numbers);
+            }
+
+            @Override
+            public void close() {
+                if (closed) return;
+                closed = true;
+
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // There is nothing left to read, so the file is as good as closed.
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "<chunks " + path + ">";
+    }
+}
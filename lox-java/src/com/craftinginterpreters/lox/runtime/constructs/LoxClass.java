@@ -1,25 +1,42 @@
 package com.craftinginterpreters.lox.runtime.constructs;
 
+import com.craftinginterpreters.lox.lexer.Symbol;
 import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Environment;
 import com.craftinginterpreters.lox.runtime.Interpreter;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class LoxClass extends LoxInstance implements LoxCallable {
 
     private final String name;
-    private final LoxClass superclass;
-    private final Map<String, LoxFunction> methods;
-    private final Map<String, LoxFunction> staticMethods;
-    private final Map<String, LoxFunction> getterMethods;
-
-    public LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods, Map<String, LoxFunction> staticMethods, Map<String, LoxFunction> getterMethods) {
+    // Classes can't change once declared, so each table is flattened with the entries inherited from the superclass,
+    // and a lookup never has to walk the hierarchy.
+    private final Map<Symbol, LoxFunction> methods;
+    private final Map<Symbol, LoxFunction> staticMethods;
+    private final Map<Symbol, LoxFunction> getterMethods;
+    private final LoxFunction initializer;
+    private final int arity;
+    // The shape the instances of the class start from.
+    private final Shape rootShape = Shape.root();
+
+    public LoxClass(String name, LoxClass superclass, Map<Symbol, LoxFunction> methods, Map<Symbol, LoxFunction> staticMethods, Map<Symbol, LoxFunction> getterMethods) {
         this.name = name;
-        this.superclass = superclass;
-        this.methods = methods;
-        this.staticMethods = staticMethods;
-        this.getterMethods = getterMethods;
+        this.methods = flatten(superclass != null ? superclass.methods : null, methods);
+        this.staticMethods = flatten(superclass != null ? superclass.staticMethods : null, staticMethods);
+        this.getterMethods = flatten(superclass != null ? superclass.getterMethods : null, getterMethods);
+        this.initializer = this.methods.get(Symbol.INIT);
+        this.arity = initializer != null ? initializer.arity() : 0;
+    }
+
+    private static Map<Symbol, LoxFunction> flatten(Map<Symbol, LoxFunction> inherited, Map<Symbol, LoxFunction> declared) {
+        if (inherited == null) return declared;
+
+        Map<Symbol, LoxFunction> functions = new HashMap<>(inherited);
+        functions.putAll(declared);
+        return functions;
     }
 
     @Override
@@ -30,7 +47,7 @@ public class LoxClass extends LoxInstance implements LoxCallable {
     @Override
     public Object get(Token name) {
         // For now, we support only static methods and not static fields.
-        LoxFunction staticMethod = this.findStaticMethod(name.lexeme);
+        LoxFunction staticMethod = this.findStaticMethod(name.symbol);
         if (staticMethod != null) return staticMethod;
 
         throw new Interpreter.RuntimeError(name, "Undefined static method '" + name.lexeme + "'.");
@@ -45,48 +62,43 @@ public class LoxClass extends LoxInstance implements LoxCallable {
         return name;
     }
 
-    public LoxFunction findMethod(String name) {
-        LoxFunction method = find(this.methods, name);
-        if (method != null) {
-            return method;
-        }
-
-        if (superclass != null) {
-            return superclass.findMethod(name);
-        }
-
-        return null;
+    public Shape getRootShape() {
+        return rootShape;
     }
 
-    public LoxFunction findStaticMethod(String name) {
-        return find(this.staticMethods, name);
+    public LoxFunction findMethod(Symbol name) {
+        return methods.get(name);
     }
 
-    public LoxFunction findGetterMethod(String name) {
-        return find(this.getterMethods, name);
+    public LoxFunction findStaticMethod(Symbol name) {
+        return staticMethods.get(name);
     }
 
-    private LoxFunction find(Map<String, LoxFunction> functions, String name) {
-        if (functions.containsKey(name)) {
-            return functions.get(name);
-        }
-
-        return null;
+    public LoxFunction findGetterMethod(Symbol name) {
+        return getterMethods.get(name);
     }
 
     @Override
     public int arity() {
-        LoxFunction initializer = findMethod("init");
-        if (initializer == null) return 0;
-        return initializer.arity();
+        return arity;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return callN(interpreter, arguments.toArray());
+    }
+
+    @Override
+    public Object callN(Interpreter interpreter, Object[] arguments) {
         LoxInstance instance = new LoxInstance(this);
-        LoxFunction initializer = findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            Environment frame = interpreter.newFrame(initializer, instance);
+            for (Object argument : arguments) {
+                frame.define(argument);
+            }
+
+            // The initializer returns the instance anyway, which we already have.
+            interpreter.callMethod(initializer, instance, frame);
         }
 
         return instance;
@@ -0,0 +1,11 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import java.util.Set;
+
+// The values that hold other values, and print them along with themselves.
+public interface LoxContainer {
+
+    // Appends the text of the container, given the containers being printed that it's nested in, so that one that
+    // contains itself prints a placeholder instead of recursing without bound.
+    void appendTo(StringBuilder text, Set<LoxContainer> enclosing);
+}
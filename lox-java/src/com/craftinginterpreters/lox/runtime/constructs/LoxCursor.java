@@ -0,0 +1,11 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import java.util.Iterator;
+
+// The position of a for-in loop in the values it walks through. Cursors that hold on to resources, like open files,
+// release them in close(), which the loop calls however it ends.
+public interface LoxCursor extends Iterator<Object> {
+
+    default void close() {
+    }
+}
@@ -0,0 +1,154 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A handle to a text file opened for writing, which buffers what it's given and writes it to the file in large
+// chunks. Nothing is guaranteed to be in the file until the script calls flush() or close(), or the interpreter that
+// opened it flushes it when the program ends.
+public final class LoxFileWriter {
+
+    private static final Symbol WRITE = Symbol.intern("write");
+    private static final Symbol WRITE_LINE = Symbol.intern("writeLine");
+    private static final Symbol FLUSH = Symbol.intern("flush");
+    private static final Symbol CLOSE = Symbol.intern("close");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final BufferedWriter writer;
+    private boolean closed = false;
+    // The methods of the writer, bound to it the first time the program reads them, so that a call in a loop doesn't
+    // allocate a function each time around.
+    private NativeFunction writeMethod;
+    private NativeFunction writeLineMethod;
+    private NativeFunction flushMethod;
+    private NativeFunction closeMethod;
+
+    private LoxFileWriter(Path path, BufferedWriter writer) {
+        this.path = path;
+        this.writer = writer;
+    }
+
+    // The file is created if it doesn't exist, and emptied otherwise, unless the writer appends to it.
+    public static LoxFileWriter open(Path path, boolean append) {
+        try {
+            FileChannel channel = append
+                    ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+            return new LoxFileWriter(path, writer);
+        } catch (IOException | SecurityException e) {
+            throw new NativeFunction.Failure("Can't open file '" + path + "' for writing.");
+        }
+    }
+
+    public void write(Object value) {
+        checkOpen();
+        try {
+            if (value == null) {
+                writer.write("nil");
+            } else if (Numbers.isNumber(value)) {
+                writer.write(Numbers.format(value));
+            } else {
+                writer.write(value.toString());
+            }
+        } catch (IOException e) {
+            throw new NativeFunction.Failure("Can't write file: " + e.getMessage());
+        }
+    }
+
+    public void writeLine(Object value) {
+        write(value);
+        write("\n");
+    }
+
+    public void flush() {
+        checkOpen();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new NativeFunction.Failure("Can't write file: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new NativeFunction.Failure("Can't write file: " + e.getMessage());
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new NativeFunction.Failure("Can't use a closed file.");
+    }
+
+    // The properties of file writers, which are the same for all of them.
+    public Object get(Token name) {
+        if (name.symbol == WRITE) {
+            if (writeMethod == null) {
+                writeMethod = NativeFunction.of("write", (interpreter, value) -> {
+                    write(value);
+                    return null;
+                });
+            }
+            return writeMethod;
+        }
+
+        if (name.symbol == WRITE_LINE) {
+            if (writeLineMethod == null) {
+                writeLineMethod = NativeFunction.of("writeLine", (interpreter, value) -> {
+                    writeLine(value);
+                    return null;
+                });
+            }
+            return writeLineMethod;
+        }
+
+        if (name.symbol == FLUSH) {
+            if (flushMethod == null) {
+                flushMethod = NativeFunction.of("flush", interpreter -> {
+                    flush();
+                    return null;
+                });
+            }
+            return flushMethod;
+        }
+
+        if (name.symbol == CLOSE) {
+            if (closeMethod == null) {
+                closeMethod = NativeFunction.of("close", interpreter -> {
+                    close();
+                    return null;
+                });
+            }
+            return closeMethod;
+        }
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        return "<writer " + path + ">";
+    }
+}
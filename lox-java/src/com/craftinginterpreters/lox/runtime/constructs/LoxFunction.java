@@ -1,30 +1,37 @@
 package com.craftinginterpreters.lox.runtime.constructs;
 
 import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.runtime.Completion;
 import com.craftinginterpreters.lox.runtime.Environment;
 import com.craftinginterpreters.lox.runtime.Interpreter;
-import com.craftinginterpreters.lox.runtime.unwinders.Return;
 
 import java.util.List;
 
-public class LoxFunction implements LoxCallable {
+public class LoxFunction implements TailCallable {
     public final boolean isInitializer;
     public final boolean isParameterless;
     private final Stmt.Function declaration;
+    private final List<?> body;
     private final Environment closure;
+    private final LoxInstance receiver;
 
-    public LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer, boolean isParameterless) {
+    public LoxFunction(Stmt.Function declaration, List<?> body, Environment closure, boolean isInitializer, boolean isParameterless) {
+        this(declaration, body, closure, isInitializer, isParameterless, null);
+    }
+
+    private LoxFunction(Stmt.Function declaration, List<?> body, Environment closure, boolean isInitializer, boolean isParameterless, LoxInstance receiver) {
         this.declaration = declaration;
+        this.body = body;
         this.closure = closure;
         this.isInitializer = isInitializer;
         this.isParameterless = isParameterless;
+        this.receiver = receiver;
     }
 
+    // A bound method is only needed when the method is used as a value, since calls of a method pass the instance to
+    // the interpreter directly.
     public LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(closure);
-        environment.define(instance);
-
-        return new LoxFunction(declaration, environment, isInitializer, isParameterless);
+        return new LoxFunction(declaration, body, closure, isInitializer, isParameterless, instance);
     }
 
     @Override
@@ -33,21 +40,24 @@ public class LoxFunction implements LoxCallable {
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(this.closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(arguments.get(i));
-        }
-
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            if (isInitializer) return closure.getAt(new Environment.Location(0, 0));
-            return returnValue.value;
-        }
-
-        // TODO: check if the positioning of the variable is correct.
-        if (isInitializer) return closure.getAt(new Environment.Location(0, 0));
+    public Environment getClosure() {
+        return closure;
+    }
+
+    @Override
+    public List<?> getBody() {
+        return body;
+    }
+
+    @Override
+    public LoxInstance getReceiver() {
+        return receiver;
+    }
+
+    @Override
+    public Object result(Interpreter interpreter, LoxInstance receiver, Completion completion) {
+        if (isInitializer) return receiver;
+        if (completion == Completion.RETURN) return interpreter.takeReturnValue();
         return null;
     }
 
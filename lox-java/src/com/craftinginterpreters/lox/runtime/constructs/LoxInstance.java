@@ -3,11 +3,13 @@ package com.craftinginterpreters.lox.runtime.constructs;
 import com.craftinginterpreters.lox.lexer.Token;
 import com.craftinginterpreters.lox.runtime.Interpreter;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class LoxInstance {
-    private final Map<String, Object> fields = new HashMap<>();
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private Shape shape = Shape.EMPTY;
+    private Object[] values = NO_VALUES;
     private LoxClass klass;
 
     public LoxInstance() {
@@ -15,21 +17,67 @@ public class LoxInstance {
 
     public LoxInstance(LoxClass klass) {
         this.klass = klass;
+        this.shape = klass.getRootShape();
+    }
+
+    // An instance that starts with all of its fields, laid out as the shape says.
+    protected LoxInstance(LoxClass klass, Shape shape, Object[] values) {
+        this.klass = klass;
+        this.shape = shape;
+        this.values = values;
     }
 
     public void set(Token name, Object value) {
-        this.fields.put(name.lexeme, value);
+        int slot = shape.slotOf(name.symbol);
+        if (slot == -1) {
+            addField(shape.withField(name.symbol), value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public LoxClass getKlass() {
+        return klass;
+    }
+
+    public Object getField(int slot) {
+        return values[slot];
+    }
+
+    // Stores the field at the slot an inline cache resolved for the current shape. A store that adds the field also
+    // carries the shape it leads to, which must be the one reached from the current shape by adding it.
+    public void setField(Token name, int slot, Shape transition, Object value) {
+        if (transition != null) {
+            addField(transition, value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    private void addField(Shape shape, Object value) {
+        int slot = shape.size() - 1;
+        if (slot == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+        }
+
+        this.shape = shape;
+        values[slot] = value;
     }
 
     public Object get(Token name) {
-        if (this.fields.containsKey(name.lexeme)) {
-            return this.fields.get(name.lexeme);
+        int slot = shape.slotOf(name.symbol);
+        if (slot != -1) {
+            return values[slot];
         }
 
-        LoxFunction method = klass.findMethod(name.lexeme);
+        LoxFunction method = klass.findMethod(name.symbol);
         if (method != null) return method.bind(this);
 
-        LoxFunction getterMethod = klass.findGetterMethod(name.lexeme);
+        LoxFunction getterMethod = klass.findGetterMethod(name.symbol);
         if (getterMethod != null) return getterMethod.bind(this);
 
         throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
@@ -0,0 +1,7 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+// The values that for-in loops walk through natively, without going through the iterator() method of an instance.
+public interface LoxIterable {
+
+    LoxCursor cursor();
+}
@@ -1,18 +1,20 @@
 package com.craftinginterpreters.lox.runtime.constructs;
 
 import com.craftinginterpreters.lox.ast.Expr;
+import com.craftinginterpreters.lox.runtime.Completion;
 import com.craftinginterpreters.lox.runtime.Environment;
 import com.craftinginterpreters.lox.runtime.Interpreter;
-import com.craftinginterpreters.lox.runtime.unwinders.Return;
 
 import java.util.List;
 
-public class LoxLambda implements LoxCallable {
+public class LoxLambda implements TailCallable {
     private final Expr.Lambda declaration;
+    private final List<?> body;
     private final Environment closure;
 
-    public LoxLambda(Expr.Lambda declaration, Environment closure) {
+    public LoxLambda(Expr.Lambda declaration, List<?> body, Environment closure) {
         this.declaration = declaration;
+        this.body = body;
         this.closure = closure;
     }
 
@@ -22,17 +24,23 @@ public class LoxLambda implements LoxCallable {
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(this.closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(arguments.get(i));
-        }
-
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            return returnValue.value;
-        }
+    public Environment getClosure() {
+        return closure;
+    }
+
+    @Override
+    public List<?> getBody() {
+        return body;
+    }
+
+    @Override
+    public LoxInstance getReceiver() {
+        return null;
+    }
+
+    @Override
+    public Object result(Interpreter interpreter, LoxInstance receiver, Completion completion) {
+        if (completion == Completion.RETURN) return interpreter.takeReturnValue();
         return null;
     }
 
@@ -0,0 +1,150 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The lines of a UTF-8 text file, read lazily as a for-in loop walks through them.
+//
+// Each loop opens the file anew and streams it through a fixed pair of buffers, so only the current line is kept
+// around, however large the file is. Lines end at "\n" or "\r\n", which are left out of them.
+public final class LoxLines implements LoxIterable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    public LoxLines(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public LoxCursor cursor() {
+        return new Cursor(open(path));
+    }
+
+    static FileChannel open(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException | SecurityException e) {
+            throw new NativeFunction.Failure("Can't open file '" + path + "'.");
+        }
+    }
+
+    private static final class Cursor implements LoxCursor {
+        private final FileChannel channel;
+        private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // The line being read, which can span any number of chunks.
+        private final StringBuilder line = new StringBuilder();
+        private String next;
+        private boolean endOfInput = false;
+        private boolean closed = false;
+
+        Cursor(FileChannel channel) {
+            this.channel = channel;
+            chars.flip();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) next = readLine();
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            hasNext();
+            String line = next;
+            next = null;
+            return line;
+        }
+
+        private String readLine() {
+            while (true) {
+                char[] buffer = chars.array();
+                int start = chars.position();
+                int end = chars.limit();
+                for (int i = start; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        line.append(buffer, start, i - start);
+                        chars.position(i + 1);
+                        return takeLine();
+                    }
+                }
+                line.append(buffer, start, end - start);
+                chars.position(end);
+
+                if (!fill()) {
+                    close();
+                    // The last line might not end with a newline.
+                    return line.length() > 0 ? takeLine() : null;
+                }
+            }
+        }
+
+        private String takeLine() {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') length--;
+
+            String text = line.substring(0, length);
+            line.setLength(0);
+            return text;
+        }
+
+        // Decodes the next chunk of the file into the characters, and returns whether there were any.
+        private boolean fill() {
+            if (endOfInput) return false;
+
+            chars.clear();
+            try {
+                while (chars.position() == 0) {
+                    int read = channel.read(bytes);
+                    endOfInput = read == -1;
+
+                    bytes.flip();
+                    // A character split across two chunks stays in the bytes until the rest of it is read.
+                    decoder.decode(bytes, chars, endOfInput);
+                    bytes.compact();
+
+                    if (endOfInput) {
+                        decoder.flush(chars);
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new NativeFunction.Failure("Can't read file: " + e.getMessage());
+            }
+
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // There is nothing left to read, so the file is as good as closed.
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<lines " + path + ">";
+    }
+}
@@ -0,0 +1,258 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+import com.craftinginterpreters.lox.runtime.Rope;
+
+import java.util.Set;
+
+// A hash table from Lox values to Lox values, with open addressing and linear probing like the one in lox-c/table.c.
+//
+// Keys and values live in two flat arrays, so a lookup walks contiguous memory instead of chasing the entry nodes of a
+// java.util.HashMap. Keys are normalized when they enter the table: numbers take the one box Numbers gives to their
+// value and ropes are flattened to strings. After that, equals() agrees with `==`, and instances, which don't override
+// it, are compared by identity.
+public final class LoxMap implements LoxIterable, LoxContainer {
+
+    private static final Symbol SIZE = Symbol.intern("size");
+    private static final Symbol GET = Symbol.intern("get");
+    private static final Symbol PUT = Symbol.intern("put");
+    private static final Symbol REMOVE = Symbol.intern("remove");
+    private static final Symbol HAS = Symbol.intern("has");
+    private static final Symbol KEYS = Symbol.intern("keys");
+    private static final Symbol VALUES = Symbol.intern("values");
+
+    private static final int MIN_CAPACITY = 8;
+
+    // An empty slot has a null key, so nil is stored as a key of its own, and removed entries leave a tombstone behind
+    // to keep the probe sequences of the other keys intact.
+    private static final Object NIL = new Object();
+    private static final Object TOMBSTONE = new Object();
+
+    private Object[] keys = new Object[MIN_CAPACITY];
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int size = 0;
+    // The live entries and the tombstones, which both lengthen the probe sequences.
+    private int used = 0;
+    // The methods of the map, bound to it the first time the program reads them, so that a call in a loop doesn't
+    // allocate a function each time around.
+    private NativeFunction getMethod;
+    private NativeFunction putMethod;
+    private NativeFunction removeMethod;
+    private NativeFunction hasMethod;
+    private NativeFunction keysMethod;
+    private NativeFunction valuesMethod;
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object key) {
+        int slot = find(keys, normalize(key));
+        return keys[slot] == null ? null : values[slot];
+    }
+
+    public boolean has(Object key) {
+        return keys[find(keys, normalize(key))] != null;
+    }
+
+    public void put(Object key, Object value) {
+        // We keep the load at most 3/4, as lox-c does.
+        if ((used + 1) * 4 > keys.length * 3) resize();
+
+        key = normalize(key);
+        int slot = find(keys, key);
+        if (keys[slot] == null) {
+            size++;
+            used++;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    public boolean remove(Object key) {
+        int slot = find(keys, normalize(key));
+        if (keys[slot] == null) return false;
+
+        keys[slot] = TOMBSTONE;
+        values[slot] = null;
+        size--;
+        return true;
+    }
+
+    // The slot of the key, or the empty slot that ends its probe sequence. Tombstones are skipped rather than reused,
+    // since put() needs to know if the key is further along; resize() is what clears them.
+    private static int find(Object[] keys, Object key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (true) {
+            Object candidate = keys[slot];
+            if (candidate == null || candidate == key || (candidate != TOMBSTONE && candidate.equals(key))) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(Object key) {
+        // Whole numbers hash to themselves, and a run of them would fill a run of slots that the probes of every other
+        // key landing in it would have to walk through, so we scatter the hashes with a Fibonacci multiplier first.
+        int hash = key.hashCode() * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static Object normalize(Object key) {
+        if (key == null) return NIL;
+        if (Numbers.isNumber(key)) return Numbers.box(Numbers.toDouble(key));
+        return Rope.flatten(key);
+    }
+
+    private static Object denormalize(Object key) {
+        return key == NIL ? null : key;
+    }
+
+    private void resize() {
+        // Tombstones are dropped on the way, so a table that only churns keeps its capacity.
+        int capacity = keys.length;
+        while ((size + 1) * 4 > capacity * 3 / 2) capacity *= 2;
+
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        used = size;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key == null || key == TOMBSTONE) continue;
+
+            int slot = find(keys, key);
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // A cursor over the keys in the order of their slots. Entries put or removed while it runs might be skipped or seen
+    // twice, since a resize moves them around.
+    @Override
+    public LoxCursor cursor() {
+        return new LoxCursor() {
+            private final Object[] slots = keys;
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < slots.length && (slots[from] == null || slots[from] == TOMBSTONE)) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < slots.length;
+            }
+
+            @Override
+            public Object next() {
+                Object key = denormalize(slots[slot]);
+                slot = advance(slot + 1);
+                return key;
+            }
+        };
+    }
+
+    // The keys in the order of their slots.
+    public LoxArray keys() {
+        Object[] elements = new Object[size];
+        int count = 0;
+        for (Object key : keys) {
+            if (key != null && key != TOMBSTONE) elements[count++] = denormalize(key);
+        }
+
+        return LoxArray.of(elements);
+    }
+
+    // The values in the same order as keys().
+    public LoxArray values() {
+        Object[] elements = new Object[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && keys[i] != TOMBSTONE) elements[count++] = values[i];
+        }
+
+        return LoxArray.of(elements);
+    }
+
+    // The properties of maps, which are the same for all of them.
+    public Object get(Token name) {
+        if (name.symbol == SIZE) return Numbers.box(size);
+
+        if (name.symbol == GET) {
+            if (getMethod == null) getMethod = NativeFunction.of("get", (interpreter, key) -> get(key));
+            return getMethod;
+        }
+
+        if (name.symbol == PUT) {
+            if (putMethod == null) {
+                putMethod = NativeFunction.of("put", (interpreter, key, value) -> {
+                    put(key, value);
+                    return null;
+                });
+            }
+            return putMethod;
+        }
+
+        if (name.symbol == REMOVE) {
+            if (removeMethod == null) removeMethod = NativeFunction.of("remove", (interpreter, key) -> remove(key));
+            return removeMethod;
+        }
+
+        if (name.symbol == HAS) {
+            if (hasMethod == null) hasMethod = NativeFunction.of("has", (interpreter, key) -> has(key));
+            return hasMethod;
+        }
+
+        if (name.symbol == KEYS) {
+            if (keysMethod == null) keysMethod = NativeFunction.of("keys", interpreter -> keys());
+            return keysMethod;
+        }
+
+        if (name.symbol == VALUES) {
+            if (valuesMethod == null) valuesMethod = NativeFunction.of("values", interpreter -> values());
+            return valuesMethod;
+        }
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public void appendTo(StringBuilder text, Set<LoxContainer> enclosing) {
+        if (!enclosing.add(this)) {
+            text.append("{...}");
+            return;
+        }
+
+        text.append('{');
+        boolean first = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null || keys[i] == TOMBSTONE) continue;
+
+            if (!first) text.append(", ");
+            first = false;
+
+            Interpreter.appendValue(text, denormalize(keys[i]), enclosing);
+            text.append(": ");
+            Interpreter.appendValue(text, values[i], enclosing);
+        }
+        text.append('}');
+
+        enclosing.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        Interpreter.appendValue(text, this);
+        return text.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+
+import java.util.List;
+import java.util.Map;
+
+// A class whose instances are plain values: they are created with all of their fields, which never change, and two of
+// them are equal when their fields are.
+//
+// Since the fields are known upfront, every instance has the same layout, which is decided here once and for all.
+public final class LoxRecord extends LoxClass {
+
+    private final Shape layout;
+    private final int arity;
+
+    public LoxRecord(String name, List<Symbol> fields, Map<Symbol, LoxFunction> methods, Map<Symbol, LoxFunction> staticMethods, Map<Symbol, LoxFunction> getterMethods) {
+        super(name, null, methods, staticMethods, getterMethods);
+
+        Shape layout = getRootShape();
+        for (Symbol field : fields) {
+            layout = layout.withField(field);
+        }
+        this.layout = layout;
+        this.arity = fields.size();
+    }
+
+    public Shape getLayout() {
+        return layout;
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + " record";
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    // The arguments are the values of the fields, in the order they were declared. The arrays the interpreter passes
+    // are never used again by the caller, so the instance takes them over as they are.
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return new LoxRecordInstance(this, arguments.toArray());
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return new LoxRecordInstance(this, new Object[0]);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object a0) {
+        return new LoxRecordInstance(this, new Object[]{a0});
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a0, Object a1) {
+        return new LoxRecordInstance(this, new Object[]{a0, a1});
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a0, Object a1, Object a2) {
+        return new LoxRecordInstance(this, new Object[]{a0, a1, a2});
+    }
+
+    @Override
+    public Object callN(Interpreter interpreter, Object[] arguments) {
+        return new LoxRecordInstance(this, arguments);
+    }
+}
@@ -0,0 +1,97 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+import com.craftinginterpreters.lox.runtime.Rope;
+
+import java.util.Set;
+
+// An instance of a record, which holds exactly its fields in the layout of the record. It never changes shape, thus
+// every property access on the instances of a record hits the same inline cache entry, and the instance is nothing
+// more than the object and its array of values, both allocated once when it's created.
+public final class LoxRecordInstance extends LoxInstance implements LoxContainer {
+
+    public LoxRecordInstance(LoxRecord record, Object[] values) {
+        super(record, record.getLayout(), values);
+    }
+
+    // Both ways of storing a field end up here, so that a record can't be changed through either of them.
+
+    @Override
+    public void set(Token name, Object value) {
+        throw immutable(name);
+    }
+
+    @Override
+    public void setField(Token name, int slot, Shape transition, Object value) {
+        throw immutable(name);
+    }
+
+    private static Interpreter.RuntimeError immutable(Token name) {
+        return new Interpreter.RuntimeError(name, "Can't set property '" + name.lexeme + "' on an immutable record.");
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) return true;
+        if (!(object instanceof LoxRecordInstance other) || other.getKlass() != getKlass()) return false;
+
+        for (int slot = 0; slot < getShape().size(); slot++) {
+            if (!fieldEquals(getField(slot), other.getField(slot))) return false;
+        }
+
+        return true;
+    }
+
+    // The same equality as the one of the `==` operator.
+    private static boolean fieldEquals(Object a, Object b) {
+        a = Rope.flatten(a);
+        b = Rope.flatten(b);
+
+        if (a == null) return b == null;
+        if (Numbers.isNumber(a) && Numbers.isNumber(b)) return Numbers.isEqual(a, b);
+
+        return a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = getKlass().hashCode();
+        for (int slot = 0; slot < getShape().size(); slot++) {
+            Object value = Rope.flatten(getField(slot));
+            // Equal numbers can be stored differently, so they are hashed as the doubles they stand for.
+            int valueHash = Numbers.isNumber(value) ? Double.hashCode(Numbers.toDouble(value)) : value == null ? 0 : value.hashCode();
+            hash = 31 * hash + valueHash;
+        }
+
+        return hash;
+    }
+
+    @Override
+    public void appendTo(StringBuilder text, Set<LoxContainer> enclosing) {
+        text.append(getKlass().getName());
+        if (!enclosing.add(this)) {
+            text.append("(...)");
+            return;
+        }
+
+        text.append('(');
+        for (int slot = 0; slot < getShape().size(); slot++) {
+            if (slot > 0) text.append(", ");
+
+            Object value = getField(slot);
+            Interpreter.appendValue(text, value, enclosing);
+        }
+        text.append(')');
+
+        enclosing.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        Interpreter.appendValue(text, this);
+        return text.toString();
+    }
+}
@@ -0,0 +1,591 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+import com.craftinginterpreters.lox.runtime.Rope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A hash table from numbers and strings to numbers and strings, which lives in a memory-mapped file instead of the
+// heap, so it can hold far more entries than the heap could, and it's still there the next time the file is opened.
+//
+// The file starts with a header, and everything after it is only ever appended: entries are records that hold their
+// key and their value, and the index is an open-addressing table like the one of LoxMap, whose slots point to the
+// records. Opening a store only reads the header, since the index is used where it lies in the file. A value that is
+// replaced by one of the same type and size is overwritten in place; otherwise, a new record is appended and the old one
+// is left behind, as is the old index whenever the index grows.
+//
+// The file is mapped in regions, since a single mapping can't be larger than 2 GB. Records never straddle two regions,
+// and neither do index slots, which are aligned on their size.
+//
+// Nothing read from the file is trusted: the header is checked against the size of the file when the store is opened,
+// and every record against the end of the data and the region it lies in when a lookup first reaches it, so a damaged
+// file makes the store fail like any other native, instead of reading out of bounds. The file is also locked while the
+// store is open, so that two stores, in this process or another one, can't write over each other.
+public final class LoxStore implements LoxIterable {
+
+    private static final Symbol GET = Symbol.intern("get");
+    private static final Symbol PUT = Symbol.intern("put");
+    private static final Symbol SIZE = Symbol.intern("size");
+    private static final Symbol FLUSH = Symbol.intern("flush");
+    private static final Symbol CLOSE = Symbol.intern("close");
+
+    private static final long MAGIC = 0x4c4f5853544f5245L; // "LOXSTORE"
+    private static final int VERSION = 1;
+
+    private static final int REGION_BITS = 30;
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+    private static final long MIN_FILE_SIZE = 1L << 20;
+
+    // The header, at the start of the file.
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int INDEX_OFFSET = 16;
+    private static final int CAPACITY_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int END_OFFSET = 40;
+
+    // An index slot holds the offset of its record, which is 0 if the slot is empty, and the hash of its key.
+    private static final int SLOT_SIZE = 16;
+    private static final long MIN_CAPACITY = 1024;
+
+    // A record is a key type, a value type, the lengths of the key and of the value, and then their bytes.
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final byte NUMBER = 1;
+    private static final byte STRING = 2;
+
+    private final Path path;
+    private final FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer[] regions;
+    private boolean closed = false;
+
+    // The header fields, which we write through to the file as they change.
+    private long indexOffset;
+    private long capacity;
+    private long count;
+    private long end;
+
+    // The methods of the store, bound to it the first time the program reads them, so that a call in a loop doesn't
+    // allocate a function each time around.
+    private NativeFunction getMethod;
+    private NativeFunction putMethod;
+    private NativeFunction flushMethod;
+    private NativeFunction closeMethod;
+
+    private LoxStore(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.regions = new MappedByteBuffer[regionCount(fileSize)];
+
+        if (fileSize == 0) {
+            create();
+        } else {
+            load();
+        }
+    }
+
+    public static LoxStore open(Path path) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | SecurityException e) {
+            throw new NativeFunction.Failure("Can't open store '" + path + "'.");
+        }
+
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) throw new OverlappingFileLockException();
+
+            return new LoxStore(path, channel);
+        } catch (OverlappingFileLockException e) {
+            closeQuietly(channel);
+            throw new NativeFunction.Failure("Store '" + path + "' is already open.");
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new NativeFunction.Failure("Can't open store '" + path + "': " + e.getMessage());
+        } catch (NativeFunction.Failure failure) {
+            closeQuietly(channel);
+            throw failure;
+        }
+    }
+
+    private void create() throws IOException {
+        grow(MIN_FILE_SIZE);
+        putLong(MAGIC_OFFSET, MAGIC);
+        putInt(VERSION_OFFSET, VERSION);
+
+        end = HEADER_SIZE;
+        count = 0;
+        allocateIndex(MIN_CAPACITY);
+        putLong(COUNT_OFFSET, count);
+    }
+
+    private void load() throws IOException {
+        if (fileSize < HEADER_SIZE || getLong(MAGIC_OFFSET) != MAGIC) {
+            throw new NativeFunction.Failure("'" + path + "' is not a store.");
+        }
+        if (getInt(VERSION_OFFSET) != VERSION) {
+            throw new NativeFunction.Failure("Store '" + path + "' has an unsupported version.");
+        }
+
+        indexOffset = getLong(INDEX_OFFSET);
+        capacity = getLong(CAPACITY_OFFSET);
+        count = getLong(COUNT_OFFSET);
+        end = getLong(END_OFFSET);
+
+        // The capacity is bounded before the size of the index is computed, which thus can't overflow.
+        if (end < HEADER_SIZE || end > fileSize
+                || capacity < 1 || Long.bitCount(capacity) != 1 || capacity > (end - HEADER_SIZE) / SLOT_SIZE
+                || indexOffset < HEADER_SIZE || indexOffset % SLOT_SIZE != 0 || indexOffset > end - capacity * SLOT_SIZE
+                || count < 0 || count > capacity) {
+            throw corrupt();
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public Object get(Object key) {
+        checkOpen();
+        Key k = key(key);
+
+        long record = getLong(slot(find(k)));
+        if (record == 0) return null;
+
+        return readValue(record);
+    }
+
+    public void put(Object key, Object value) {
+        checkOpen();
+        Key k = key(key);
+        Object v = checkValue(value);
+        byte valueType = type(v);
+        byte[] valueBytes = valueType == STRING ? ((String) v).getBytes(StandardCharsets.UTF_8) : null;
+        int valueLength = valueBytes != null ? valueBytes.length : Long.BYTES;
+
+        try {
+            long slot = slot(find(k));
+            long record = getLong(slot);
+
+            if (record != 0) {
+                // The new value fits where the old one was.
+                if (getByte(record + 1) == valueType && getInt(record + 8) == valueLength) {
+                    writeValue(record + RECORD_HEADER_SIZE + getInt(record + 4), v, valueBytes);
+                    return;
+                }
+
+                putLong(slot, appendRecord(k, valueType, v, valueBytes, valueLength));
+                return;
+            }
+
+            // We keep the load at most 3/4, as LoxMap does.
+            if ((count + 1) * 4 > capacity * 3) {
+                allocateIndex(capacity * 2);
+                slot = slot(find(k));
+            }
+
+            long appended = appendRecord(k, valueType, v, valueBytes, valueLength);
+            putLong(slot, appended);
+            putInt(slot + 8, k.hash);
+            count++;
+            putLong(COUNT_OFFSET, count);
+        } catch (IOException e) {
+            throw new NativeFunction.Failure("Can't write store: " + e.getMessage());
+        }
+    }
+
+    // Writes everything that was put so far to the disk.
+    public void flush() {
+        checkOpen();
+        try {
+            for (MappedByteBuffer region : regions) {
+                if (region != null) region.force();
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new NativeFunction.Failure("Can't write store: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (closed) return;
+
+        flush();
+        closed = true;
+        regions = null;
+        closeQuietly(channel);
+    }
+
+    // The index of the slot of the key, or of the empty slot that ends its probe sequence. The records are checked
+    // before their key is compared, so the one found is safe to read.
+    private long find(Key key) {
+        long mask = capacity - 1;
+        long index = key.hash & mask;
+
+        // The load of a sound index is at most 3/4, so a probe sequence that goes all the way around means it's not.
+        for (long probes = 0; probes < capacity; probes++) {
+            long slot = slot(index);
+            long record = getLong(slot);
+            if (record == 0) return index;
+            if (getInt(slot + 8) == key.hash && keyEquals(checkRecord(record), key)) return index;
+            index = (index + 1) & mask;
+        }
+
+        throw corrupt();
+    }
+
+    private long slot(long index) {
+        return indexOffset + index * SLOT_SIZE;
+    }
+
+    // Moves the index to a larger table at the end of the file. The records stay where they are, and since their
+    // hashes are in the slots, the keys don't need to be read again.
+    private void allocateIndex(long newCapacity) throws IOException {
+        long newIndex = (end + SLOT_SIZE - 1) & -SLOT_SIZE;
+        long newEnd = newIndex + newCapacity * SLOT_SIZE;
+        ensureSize(newEnd);
+
+        long mask = newCapacity - 1;
+        for (long i = 0; i < capacity; i++) {
+            long slot = slot(i);
+            long record = getLong(slot);
+            if (record == 0) continue;
+
+            int hash = getInt(slot + 8);
+            long index = hash & mask;
+            while (getLong(newIndex + index * SLOT_SIZE) != 0) {
+                index = (index + 1) & mask;
+            }
+
+            putLong(newIndex + index * SLOT_SIZE, record);
+            putInt(newIndex + index * SLOT_SIZE + 8, hash);
+        }
+
+        indexOffset = newIndex;
+        capacity = newCapacity;
+        end = newEnd;
+        putLong(INDEX_OFFSET, indexOffset);
+        putLong(CAPACITY_OFFSET, capacity);
+        putLong(END_OFFSET, end);
+    }
+
+    private long appendRecord(Key key, byte valueType, Object value, byte[] valueBytes, int valueLength) throws IOException {
+        long size = (long) RECORD_HEADER_SIZE + key.length() + valueLength;
+        if (size > REGION_SIZE) throw new NativeFunction.Failure("Store entries can't be larger than 1 GB.");
+
+        long record = end;
+        // A record that would straddle two regions starts at the next one instead.
+        if ((record >>> REGION_BITS) != ((record + size - 1) >>> REGION_BITS)) {
+            record = (record + REGION_MASK) & ~REGION_MASK;
+        }
+        ensureSize(record + size);
+
+        putByte(record, key.type);
+        putByte(record + 1, valueType);
+        putInt(record + 4, key.length());
+        putInt(record + 8, valueLength);
+        if (key.type == STRING) {
+            putBytes(record + RECORD_HEADER_SIZE, key.bytes);
+        } else {
+            putLong(record + RECORD_HEADER_SIZE, key.bits);
+        }
+        writeValue(record + RECORD_HEADER_SIZE + key.length(), value, valueBytes);
+
+        end = record + size;
+        putLong(END_OFFSET, end);
+        return record;
+    }
+
+    private void writeValue(long offset, Object value, byte[] bytes) {
+        if (bytes != null) {
+            putBytes(offset, bytes);
+        } else {
+            putLong(offset, Double.doubleToLongBits(Numbers.toDouble(value)));
+        }
+    }
+
+    private Object readValue(long record) {
+        long offset = record + RECORD_HEADER_SIZE + getInt(record + 4);
+        if (getByte(record + 1) == NUMBER) return Numbers.box(Double.longBitsToDouble(getLong(offset)));
+
+        return readString(offset, getInt(record + 8));
+    }
+
+    private Object readKey(long record) {
+        checkRecord(record);
+        long offset = record + RECORD_HEADER_SIZE;
+        if (getByte(record) == NUMBER) return Numbers.box(Double.longBitsToDouble(getLong(offset)));
+
+        return readString(offset, getInt(record + 4));
+    }
+
+    private String readString(long offset, int length) {
+        byte[] bytes = new byte[length];
+        region(offset).get(position(offset), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean keyEquals(long record, Key key) {
+        if (getByte(record) != key.type) return false;
+        if (key.type == NUMBER) return getLong(record + RECORD_HEADER_SIZE) == key.bits;
+
+        if (getInt(record + 4) != key.bytes.length) return false;
+        MappedByteBuffer region = region(record);
+        int position = position(record + RECORD_HEADER_SIZE);
+        for (int i = 0; i < key.bytes.length; i++) {
+            if (region.get(position + i) != key.bytes[i]) return false;
+        }
+
+        return true;
+    }
+
+    // The keys in the order of the slots of the index.
+    @Override
+    public LoxCursor cursor() {
+        checkOpen();
+
+        return new LoxCursor() {
+            private long index = advance(0);
+
+            private long advance(long from) {
+                while (from < capacity && getLong(slot(from)) == 0) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                checkOpen();
+                return index < capacity;
+            }
+
+            @Override
+            public Object next() {
+                Object key = readKey(getLong(slot(index)));
+                index = advance(index + 1);
+                return key;
+            }
+        };
+    }
+
+    // The file only grows, by doubling, and the mapping of its last region is redone whenever it does.
+    private void ensureSize(long size) throws IOException {
+        if (size <= fileSize) return;
+
+        long newSize = Math.max(MIN_FILE_SIZE, fileSize);
+        while (newSize < size) newSize *= 2;
+        grow(newSize);
+    }
+
+    private void grow(long newSize) throws IOException {
+        // Writing the last byte extends the file, which reads as zeros up to it.
+        channel.write(ByteBuffer.wrap(new byte[1]), newSize - 1);
+
+        MappedByteBuffer[] grown = new MappedByteBuffer[regionCount(newSize)];
+        int kept = (int) (fileSize >>> REGION_BITS);
+        System.arraycopy(regions, 0, grown, 0, Math.min(kept, regions.length));
+        regions = grown;
+        fileSize = newSize;
+    }
+
+    private static int regionCount(long size) {
+        return (int) ((size + REGION_MASK) >>> REGION_BITS);
+    }
+
+    private MappedByteBuffer region(long offset) {
+        int index = (int) (offset >>> REGION_BITS);
+        MappedByteBuffer region = regions[index];
+        if (region == null) {
+            long start = (long) index << REGION_BITS;
+            try {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_SIZE, fileSize - start));
+            } catch (IOException e) {
+                throw new NativeFunction.Failure("Can't map store: " + e.getMessage());
+            }
+            regions[index] = region;
+        }
+
+        return region;
+    }
+
+    private static int position(long offset) {
+        return (int) (offset & REGION_MASK);
+    }
+
+    private byte getByte(long offset) {
+        return region(offset).get(position(offset));
+    }
+
+    private int getInt(long offset) {
+        return region(offset).getInt(position(offset));
+    }
+
+    private long getLong(long offset) {
+        return region(offset).getLong(position(offset));
+    }
+
+    private void putByte(long offset, byte value) {
+        region(offset).put(position(offset), value);
+    }
+
+    private void putInt(long offset, int value) {
+        region(offset).putInt(position(offset), value);
+    }
+
+    private void putLong(long offset, long value) {
+        region(offset).putLong(position(offset), value);
+    }
+
+    private void putBytes(long offset, byte[] bytes) {
+        region(offset).put(position(offset), bytes);
+    }
+
+    // The record, once we know that its header and its data lie before the end of the data, within a single region,
+    // and that its lengths fit the types of its key and value.
+    private long checkRecord(long record) {
+        if (record < HEADER_SIZE || record > end - RECORD_HEADER_SIZE) throw corrupt();
+        if ((record >>> REGION_BITS) != ((record + RECORD_HEADER_SIZE - 1) >>> REGION_BITS)) throw corrupt();
+
+        int keyLength = getInt(record + 4);
+        int valueLength = getInt(record + 8);
+        if (!lengthFits(getByte(record), keyLength) || !lengthFits(getByte(record + 1), valueLength)) throw corrupt();
+
+        long recordEnd = record + RECORD_HEADER_SIZE + keyLength + valueLength;
+        if (recordEnd > end || (record >>> REGION_BITS) != ((recordEnd - 1) >>> REGION_BITS)) throw corrupt();
+
+        return record;
+    }
+
+    private static boolean lengthFits(byte type, int length) {
+        if (type == NUMBER) return length == Long.BYTES;
+        return type == STRING && length >= 0;
+    }
+
+    private NativeFunction.Failure corrupt() {
+        return new NativeFunction.Failure("Store '" + path + "' is corrupt.");
+    }
+
+    private void checkOpen() {
+        if (closed) throw new NativeFunction.Failure("Can't use a closed store.");
+    }
+
+    private static Key key(Object value) {
+        value = Rope.flatten(value);
+        if (Numbers.isNumber(value)) return new Key(Numbers.toDouble(value));
+        if (value instanceof String string) return new Key(string);
+
+        throw new NativeFunction.Failure("Store keys must be numbers or strings.");
+    }
+
+    private static Object checkValue(Object value) {
+        value = Rope.flatten(value);
+        if (Numbers.isNumber(value) || value instanceof String) return value;
+
+        throw new NativeFunction.Failure("Store values must be numbers or strings.");
+    }
+
+    private static byte type(Object value) {
+        return Numbers.isNumber(value) ? NUMBER : STRING;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The store is unusable either way.
+        }
+    }
+
+    // A key as it's stored: the bits of a number, which agree with `==` as Double.equals() does, or the UTF-8 bytes of
+    // a string. Their hash only depends on their value, so that it stays valid across runs.
+    private static final class Key {
+        private final byte type;
+        private final long bits;
+        private final byte[] bytes;
+        private final int hash;
+
+        Key(double number) {
+            this.type = NUMBER;
+            this.bits = Double.doubleToLongBits(number);
+            this.bytes = null;
+            this.hash = mix(Long.hashCode(bits));
+        }
+
+        Key(String string) {
+            this.type = STRING;
+            this.bits = 0;
+            this.bytes = string.getBytes(StandardCharsets.UTF_8);
+            this.hash = mix(string.hashCode());
+        }
+
+        int length() {
+            return bytes != null ? bytes.length : Long.BYTES;
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9e3779b9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // The properties of stores, which are the same for all of them.
+    public Object get(Token name) {
+        if (name.symbol == SIZE) return Numbers.box(count);
+
+        if (name.symbol == GET) {
+            if (getMethod == null) getMethod = NativeFunction.of("get", (interpreter, key) -> get(key));
+            return getMethod;
+        }
+
+        if (name.symbol == PUT) {
+            if (putMethod == null) {
+                putMethod = NativeFunction.of("put", (interpreter, key, value) -> {
+                    put(key, value);
+                    return null;
+                });
+            }
+            return putMethod;
+        }
+
+        if (name.symbol == FLUSH) {
+            if (flushMethod == null) {
+                flushMethod = NativeFunction.of("flush", interpreter -> {
+                    flush();
+                    return null;
+                });
+            }
+            return flushMethod;
+        }
+
+        if (name.symbol == CLOSE) {
+            if (closeMethod == null) {
+                closeMethod = NativeFunction.of("close", interpreter -> {
+                    close();
+                    return null;
+                });
+            }
+            return closeMethod;
+        }
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        return "<store " + path + ">";
+    }
+}
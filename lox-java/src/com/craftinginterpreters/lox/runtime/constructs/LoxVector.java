@@ -0,0 +1,239 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+import com.craftinginterpreters.lox.lexer.Token;
+import com.craftinginterpreters.lox.runtime.Float64Kernels;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Numbers;
+
+import java.util.Arrays;
+
+// A fixed-length vector of doubles, whose bulk operations go through a whole vector in a single call instead of one
+// boxed number at a time, on SIMD kernels where the JVM has them.
+//
+// The element-wise operations update the vector they are called on, and return it, so that they can be chained
+// without allocating a vector per step.
+public final class LoxVector implements LoxIterable {
+
+    private static final Float64Kernels KERNELS = Float64Kernels.load();
+
+    private static final Symbol LENGTH = Symbol.intern("length");
+    private static final Symbol ADD = Symbol.intern("add");
+    private static final Symbol MUL = Symbol.intern("mul");
+    private static final Symbol FMA = Symbol.intern("fma");
+    private static final Symbol SCALE = Symbol.intern("scale");
+    private static final Symbol SUM = Symbol.intern("sum");
+    private static final Symbol MIN = Symbol.intern("min");
+    private static final Symbol MAX = Symbol.intern("max");
+    private static final Symbol DOT = Symbol.intern("dot");
+    private static final Symbol FILL = Symbol.intern("fill");
+    private static final Symbol COPY = Symbol.intern("copy");
+    private static final Symbol TO_ARRAY = Symbol.intern("toArray");
+
+    private final double[] elements;
+    // The methods of the vector, bound to it the first time the program reads them, so that a call in a loop doesn't
+    // allocate a function each time around.
+    private NativeFunction addMethod;
+    private NativeFunction mulMethod;
+    private NativeFunction fmaMethod;
+    private NativeFunction scaleMethod;
+    private NativeFunction sumMethod;
+    private NativeFunction minMethod;
+    private NativeFunction maxMethod;
+    private NativeFunction dotMethod;
+    private NativeFunction fillMethod;
+    private NativeFunction copyMethod;
+    private NativeFunction toArrayMethod;
+
+    private LoxVector(double[] elements) {
+        this.elements = elements;
+    }
+
+    public static LoxVector zeros(int length) {
+        return new LoxVector(new double[length]);
+    }
+
+    public static LoxVector of(LoxArray array) {
+        double[] elements = new double[array.size()];
+        for (int i = 0; i < elements.length; i++) {
+            Object element = array.get(i);
+            if (!Numbers.isNumber(element)) throw new NativeFunction.Failure("Vector elements must be numbers.");
+            elements[i] = Numbers.toDouble(element);
+        }
+
+        return new LoxVector(elements);
+    }
+
+    public static String kernels() {
+        return KERNELS.name();
+    }
+
+    public int length() {
+        return elements.length;
+    }
+
+    public double get(int index) {
+        return elements[index];
+    }
+
+    public void set(int index, double value) {
+        elements[index] = value;
+    }
+
+    public LoxVector add(LoxVector other) {
+        KERNELS.add(elements, sameLength(other).elements, elements.length);
+        return this;
+    }
+
+    public LoxVector mul(LoxVector other) {
+        KERNELS.mul(elements, sameLength(other).elements, elements.length);
+        return this;
+    }
+
+    public LoxVector fma(LoxVector factor, LoxVector addend) {
+        KERNELS.fma(elements, sameLength(factor).elements, sameLength(addend).elements, elements.length);
+        return this;
+    }
+
+    public LoxVector scale(double factor) {
+        KERNELS.scale(elements, factor, elements.length);
+        return this;
+    }
+
+    public double sum() {
+        return KERNELS.sum(elements, elements.length);
+    }
+
+    public double min() {
+        return KERNELS.min(nonEmpty().elements, elements.length);
+    }
+
+    public double max() {
+        return KERNELS.max(nonEmpty().elements, elements.length);
+    }
+
+    public double dot(LoxVector other) {
+        return KERNELS.dot(elements, sameLength(other).elements, elements.length);
+    }
+
+    private LoxVector sameLength(LoxVector other) {
+        if (other.elements.length != elements.length) {
+            throw new NativeFunction.Failure("Vectors must have the same length.");
+        }
+
+        return other;
+    }
+
+    private LoxVector nonEmpty() {
+        if (elements.length == 0) throw new NativeFunction.Failure("Vector must not be empty.");
+        return this;
+    }
+
+    @Override
+    public LoxCursor cursor() {
+        return new LoxCursor() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < elements.length;
+            }
+
+            @Override
+            public Object next() {
+                return Numbers.box(elements[index++]);
+            }
+        };
+    }
+
+    // The properties of vectors, which are the same for all of them.
+    public Object get(Token name) {
+        if (name.symbol == LENGTH) return Numbers.box(elements.length);
+
+        if (name.symbol == ADD) {
+            if (addMethod == null) addMethod = NativeFunction.of("add", (interpreter, other) -> add(vector(other)));
+            return addMethod;
+        }
+        if (name.symbol == MUL) {
+            if (mulMethod == null) mulMethod = NativeFunction.of("mul", (interpreter, other) -> mul(vector(other)));
+            return mulMethod;
+        }
+        if (name.symbol == FMA) {
+            if (fmaMethod == null) {
+                fmaMethod = NativeFunction.of("fma",
+                        (interpreter, factor, addend) -> fma(vector(factor), vector(addend)));
+            }
+            return fmaMethod;
+        }
+        if (name.symbol == SCALE) {
+            if (scaleMethod == null) {
+                scaleMethod = NativeFunction.of("scale", (interpreter, factor) -> scale(number(factor)));
+            }
+            return scaleMethod;
+        }
+
+        if (name.symbol == SUM) {
+            if (sumMethod == null) sumMethod = NativeFunction.of("sum", interpreter -> Numbers.box(sum()));
+            return sumMethod;
+        }
+        if (name.symbol == MIN) {
+            if (minMethod == null) minMethod = NativeFunction.of("min", interpreter -> Numbers.box(min()));
+            return minMethod;
+        }
+        if (name.symbol == MAX) {
+            if (maxMethod == null) maxMethod = NativeFunction.of("max", interpreter -> Numbers.box(max()));
+            return maxMethod;
+        }
+        if (name.symbol == DOT) {
+            if (dotMethod == null) {
+                dotMethod = NativeFunction.of("dot", (interpreter, other) -> Numbers.box(dot(vector(other))));
+            }
+            return dotMethod;
+        }
+
+        if (name.symbol == FILL) {
+            if (fillMethod == null) {
+                fillMethod = NativeFunction.of("fill", (interpreter, value) -> {
+                    Arrays.fill(elements, number(value));
+                    return this;
+                });
+            }
+            return fillMethod;
+        }
+        if (name.symbol == COPY) {
+            if (copyMethod == null) {
+                copyMethod = NativeFunction.of("copy", interpreter -> new LoxVector(elements.clone()));
+            }
+            return copyMethod;
+        }
+        if (name.symbol == TO_ARRAY) {
+            if (toArrayMethod == null) {
+                toArrayMethod = NativeFunction.of("toArray", interpreter -> LoxArray.ofNumbers(elements.clone()));
+            }
+            return toArrayMethod;
+        }
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    private static LoxVector vector(Object value) {
+        if (value instanceof LoxVector vector) return vector;
+        throw new NativeFunction.Failure("Argument must be a vector.");
+    }
+
+    private static double number(Object value) {
+        if (!Numbers.isNumber(value)) throw new NativeFunction.Failure("Argument must be a number.");
+        return Numbers.toDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Float64Vector[");
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(Numbers.format(elements[i]));
+        }
+
+        return text.append(']').toString();
+    }
+}
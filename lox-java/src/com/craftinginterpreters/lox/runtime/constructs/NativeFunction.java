@@ -0,0 +1,142 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.runtime.Interpreter;
+
+import java.util.List;
+
+// A function implemented in Java.
+//
+// The body takes its arguments as Java parameters, with an interface per arity up to three, so that calling it doesn't
+// collect them in a list or an array. Functions with more parameters take them as an array.
+public final class NativeFunction implements LoxCallable {
+
+    @FunctionalInterface
+    public interface Body0 {
+        Object call(Interpreter interpreter);
+    }
+
+    @FunctionalInterface
+    public interface Body1 {
+        Object call(Interpreter interpreter, Object a0);
+    }
+
+    @FunctionalInterface
+    public interface Body2 {
+        Object call(Interpreter interpreter, Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    public interface Body3 {
+        Object call(Interpreter interpreter, Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    public interface BodyN {
+        Object call(Interpreter interpreter, Object[] arguments);
+    }
+
+    // What a native reports when it can't handle its arguments, which the interpreter turns into a runtime error at the
+    // site of the call.
+    public static class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public Failure(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body0 body0;
+    private final Body1 body1;
+    private final Body2 body2;
+    private final Body3 body3;
+    private final BodyN bodyN;
+
+    private NativeFunction(String name, int arity, Body0 body0, Body1 body1, Body2 body2, Body3 body3, BodyN bodyN) {
+        this.name = name;
+        this.arity = arity;
+        this.body0 = body0;
+        this.body1 = body1;
+        this.body2 = body2;
+        this.body3 = body3;
+        this.bodyN = bodyN;
+    }
+
+    public static NativeFunction of(String name, Body0 body) {
+        return new NativeFunction(name, 0, body, null, null, null, null);
+    }
+
+    public static NativeFunction of(String name, Body1 body) {
+        return new NativeFunction(name, 1, null, body, null, null, null);
+    }
+
+    public static NativeFunction of(String name, Body2 body) {
+        return new NativeFunction(name, 2, null, null, body, null, null);
+    }
+
+    public static NativeFunction of(String name, Body3 body) {
+        return new NativeFunction(name, 3, null, null, null, body, null);
+    }
+
+    public static NativeFunction of(String name, int arity, BodyN body) {
+        return new NativeFunction(name, arity, null, null, null, null, body);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    // The interpreter checks the number of arguments before calling, thus each entry point only has to pick the body
+    // of its arity.
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return callN(interpreter, arguments.toArray());
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        if (body0 != null) return body0.call(interpreter);
+        return bodyN.call(interpreter, new Object[0]);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object a0) {
+        if (body1 != null) return body1.call(interpreter, a0);
+        return bodyN.call(interpreter, new Object[]{a0});
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a0, Object a1) {
+        if (body2 != null) return body2.call(interpreter, a0, a1);
+        return bodyN.call(interpreter, new Object[]{a0, a1});
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a0, Object a1, Object a2) {
+        if (body3 != null) return body3.call(interpreter, a0, a1, a2);
+        return bodyN.call(interpreter, new Object[]{a0, a1, a2});
+    }
+
+    @Override
+    public Object callN(Interpreter interpreter, Object[] arguments) {
+        return switch (arguments.length) {
+            case 0 -> call0(interpreter);
+            case 1 -> call1(interpreter, arguments[0]);
+            case 2 -> call2(interpreter, arguments[0], arguments[1]);
+            case 3 -> call3(interpreter, arguments[0], arguments[1], arguments[2]);
+            default -> bodyN.call(interpreter, arguments);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+}
@@ -0,0 +1,74 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.lexer.Symbol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The layout of the fields of an instance, also known as hidden class.
+//
+// Shapes form a tree, where adding a field to an instance moves it to a child shape. Instances that add the same
+// fields in the same order end up sharing the same shape, thus they only need to store the values of their fields, at
+// the slot assigned by the shape. Every class has a tree of its own, rooted in its root shape, which goes away along
+// with the class.
+//
+// A shape only stores what it adds to its parent. The names of the fields are kept by slot in an array shared along
+// the chain: the first child of a shape writes its field right after the ones of its parent, in the same array, and
+// only the children that branch off later take a copy of it. A lookup scans the slots of the shape, comparing the
+// symbols by identity.
+public final class Shape {
+
+    // The shape of the objects that never have fields, such as classes.
+    public static final Shape EMPTY = root();
+
+    private static final int MIN_CAPACITY = 4;
+
+    // The array might be longer than the shape, if some of its descendants share it, but the entries past the size of
+    // the shape are never read through it.
+    private final Symbol[] names;
+    private final int size;
+    // The shapes reached by adding a field. They are created the first time an instance adds the field, possibly
+    // from any thread, hence the lock.
+    private Map<Symbol, Shape> transitions;
+
+    private Shape(Symbol[] names, int size) {
+        this.names = names;
+        this.size = size;
+    }
+
+    public static Shape root() {
+        return new Shape(new Symbol[MIN_CAPACITY], 0);
+    }
+
+    public int slotOf(Symbol name) {
+        for (int slot = 0; slot < size; slot++) {
+            if (names[slot] == name) return slot;
+        }
+
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized Shape withField(Symbol name) {
+        if (transitions == null) transitions = new HashMap<>();
+
+        Shape shape = transitions.get(name);
+        if (shape == null) {
+            Symbol[] childNames = names;
+            // The slot right after ours belongs to whichever child claimed it first.
+            if (size == names.length || names[size] != null) {
+                childNames = new Symbol[Math.max(MIN_CAPACITY, size * 2)];
+                System.arraycopy(names, 0, childNames, 0, size);
+            }
+            childNames[size] = name;
+
+            shape = new Shape(childNames, size + 1);
+            transitions.put(name, shape);
+        }
+
+        return shape;
+    }
+}
@@ -0,0 +1,76 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.runtime.Completion;
+import com.craftinginterpreters.lox.runtime.Environment;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+
+import java.util.List;
+
+// A callable whose body is Lox code. The interpreter runs the body itself, so that when it ends with a call in tail
+// position the callee can take over the Java frame of the call that is ending.
+public interface TailCallable extends LoxCallable {
+
+    Environment getClosure();
+
+    // The statements of the body, in the form that the interpreter which created the callable runs them.
+    List<?> getBody();
+
+    // The instance `this` refers to, which takes the first slot of the frame, or null if the body has no `this`.
+    LoxInstance getReceiver();
+
+    Object result(Interpreter interpreter, LoxInstance receiver, Completion completion);
+
+    // The arguments are written straight into the frame of the call.
+
+    @Override
+    default Object call(Interpreter interpreter, List<Object> arguments) {
+        Environment frame = interpreter.newFrame(this, getReceiver());
+        for (Object argument : arguments) {
+            frame.define(argument);
+        }
+
+        return interpreter.callFunction(this, frame);
+    }
+
+    @Override
+    default Object call0(Interpreter interpreter) {
+        return interpreter.callFunction(this, interpreter.newFrame(this, getReceiver()));
+    }
+
+    @Override
+    default Object call1(Interpreter interpreter, Object a0) {
+        Environment frame = interpreter.newFrame(this, getReceiver());
+        frame.define(a0);
+
+        return interpreter.callFunction(this, frame);
+    }
+
+    @Override
+    default Object call2(Interpreter interpreter, Object a0, Object a1) {
+        Environment frame = interpreter.newFrame(this, getReceiver());
+        frame.define(a0);
+        frame.define(a1);
+
+        return interpreter.callFunction(this, frame);
+    }
+
+    @Override
+    default Object call3(Interpreter interpreter, Object a0, Object a1, Object a2) {
+        Environment frame = interpreter.newFrame(this, getReceiver());
+        frame.define(a0);
+        frame.define(a1);
+        frame.define(a2);
+
+        return interpreter.callFunction(this, frame);
+    }
+
+    @Override
+    default Object callN(Interpreter interpreter, Object[] arguments) {
+        Environment frame = interpreter.newFrame(this, getReceiver());
+        for (Object argument : arguments) {
+            frame.define(argument);
+        }
+
+        return interpreter.callFunction(this, frame);
+    }
+}
@@ -1,8 +0,0 @@
-package com.craftinginterpreters.lox.runtime.unwinders;
-
-public class Break extends RuntimeException {
-
-    public Break() {
-        super(null, null, false, false);
-    }
-}
\ No newline at end of file
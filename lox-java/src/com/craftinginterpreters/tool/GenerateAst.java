@@ -8,41 +8,59 @@ import java.util.List;
 
 public class GenerateAst {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("Usage: generate_ast <output directory>");
+        boolean records = args.length == 2 && args[0].equals("--records");
+        if (args.length != 1 && !records) {
+            System.err.println("Usage: generate_ast [--records] <output directory>");
             System.exit(64);
         }
-        String outputDir = args[0];
+        String outputDir = args[args.length - 1];
 
-        defineAst(outputDir, "Expr", Arrays.asList(
+        // What follows the '|' is filled in after parsing, by the resolver or the interpreter, instead of being given
+        // to the constructor.
+        List<String> exprTypes = Arrays.asList(
                 "Assign   : Token name, Expr value",
                 "Binary   : Expr left, Token operator, Expr right",
                 "Ternary  : Expr expr1, Token operator1, Expr expr2, Token operator2, Expr expr3",
-                "Call     : Expr callee, Token paren, List<Expr> arguments",
-                "Get      : Expr object, Token name",
+                "Call     : Expr callee, Token paren, List<Expr> arguments | LoxCallSite callSite",
+                "Get      : Expr object, Token name | InlineCache inlineCache",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
+                "Interpolation : List<Expr> parts",
                 "Logical  : Expr left, Token operator, Expr right",
-                "Set      : Expr object, Token name, Expr value",
-                "Super    : Token keyword, Token method",
+                "Set      : Expr object, Token name, Expr value | InlineCache inlineCache",
+                "Super    : Token keyword, Token method | InlineCache inlineCache",
                 "This     : Token keyword",
                 "Unary    : Token operator, Expr right",
                 "Lambda   : List<Token> params, List<Stmt> body",
+                "Array    : Token bracket, List<Expr> elements",
+                "Subscript : Expr object, Token bracket, Expr index",
+                "SetSubscript : Expr object, Token bracket, Expr index, Expr value",
                 "Variable : Token name"
-        ));
+        );
 
-        defineAst(outputDir, "Stmt", Arrays.asList(
+        List<String> stmtTypes = Arrays.asList(
                 "Block      : List<Stmt> statements",
                 "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
                 "Expression : Expr expression",
+                "ForIn      : Token name, Expr iterable, Stmt body, Token iterator, Token next"
+                        + " | InlineCache iteratorCache, InlineCache nextCache",
                 "Function   : Token name, List<Token> params, List<Stmt> body, FunctionType functionType",
                 "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "Print      : Expr expression",
-                "Return     : Token keyword, Expr value",
+                "Record     : Token name, List<Token> fields, List<Stmt.Function> methods",
+                "Return     : Token keyword, Expr value | TailCall tailCall = TailCall.NONE",
                 "Break      : Token keyword",
                 "Var        : Token name, Expr initializer",
                 "While      : Expr condition, Stmt body"
-        ));
+        );
+
+        if (records) {
+            defineRecordAst(outputDir, "Expr", exprTypes);
+            defineRecordAst(outputDir, "Stmt", stmtTypes);
+        } else {
+            defineAst(outputDir, "Expr", exprTypes);
+            defineAst(outputDir, "Stmt", stmtTypes);
+        }
     }
 
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
@@ -53,6 +71,8 @@ public class GenerateAst {
         writer.println();
         writer.println("import java.util.List;");
         writer.println("import com.craftinginterpreters.lox.lexer.Token;");
+        writer.println("import com.craftinginterpreters.lox.runtime.InlineCache;");
+        writer.println("import com.craftinginterpreters.lox.runtime.LoxCallSite;");
         writer.println();
         writer.println("public abstract class " + baseName + " {");
 
@@ -61,8 +81,8 @@ public class GenerateAst {
         // The AST classes.
         for (String type : types) {
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String[] fields = type.split(":")[1].split("\\|");
+            defineType(writer, baseName, className, fields[0].trim(), fields.length > 1 ? fields[1].trim() : null);
         }
 
         // The base accept() method.
@@ -73,7 +93,8 @@ public class GenerateAst {
         writer.close();
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList,
+                                   String resolvedFieldList) {
         writer.println("  public static class " + className + " extends " + baseName + " {");
 
         // Constructor.
@@ -93,6 +114,12 @@ public class GenerateAst {
         for (String field : fields) {
             writer.println("    public final " + field + ";");
         }
+        if (resolvedFieldList != null) {
+            writer.println("    // Filled in after parsing.");
+            for (String field : resolvedFieldList.split(", ")) {
+                writer.println("    public " + field + ";");
+            }
+        }
 
         // Visitor pattern.
         writer.println();
@@ -114,4 +141,41 @@ public class GenerateAst {
 
         writer.println("  }");
     }
-}
\ No newline at end of file
+
+    private static void defineRecordAst(String outputDir, String baseName, List<String> types) throws IOException {
+        String path = outputDir + "/" + baseName + ".java";
+        PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8);
+
+        writer.println("package com.craftinginterpreters.lox.ast.records;");
+        writer.println();
+        writer.println("import com.craftinginterpreters.lox.ast.FunctionType;");
+        writer.println("import com.craftinginterpreters.lox.ast.TailCall;");
+        writer.println("import com.craftinginterpreters.lox.lexer.Token;");
+        writer.println("import com.craftinginterpreters.lox.runtime.InlineCache;");
+        writer.println("import com.craftinginterpreters.lox.runtime.LoxCallSite;");
+        writer.println();
+        writer.println("import java.util.List;");
+        writer.println();
+
+        // The node types form a closed hierarchy, so that a switch over them can be checked for exhaustiveness.
+        StringBuilder permits = new StringBuilder();
+        for (String type : types) {
+            if (permits.length() > 0) permits.append(", ");
+            permits.append(baseName).append(".").append(type.split(":")[0].trim());
+        }
+        writer.println("public sealed interface " + baseName + " permits " + permits + " {");
+
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            // The records are only built once the tree is resolved, so what the resolver found is a component too, as
+            // are the inline caches and the call sites, which the converter creates along with the records.
+            String fields = type.split(":")[1].trim().replaceAll(" = [^,]*", "").replace(" | ", ", ");
+            writer.println();
+            writer.println("    record " + className + "(" + fields + ") implements " + baseName + " {");
+            writer.println("    }");
+        }
+
+        writer.println("}");
+        writer.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.craftinginterpreters.tool;
+
+import com.craftinginterpreters.lox.Lox;
+import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.lexer.Scanner;
+import com.craftinginterpreters.lox.parser.Parser;
+import com.craftinginterpreters.lox.runtime.InlineCache;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Output;
+import com.craftinginterpreters.lox.runtime.Resolver;
+import com.craftinginterpreters.lox.runtime.SwitchInterpreter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Runs Lox scripts (for example the ones in `res/benchmarks`) on every available engine and reports the average time
+// and the bytes allocated by a single run.
+public class LoxBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    private static final Map<String, Supplier<Interpreter>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("visitor", Interpreter::new);
+        ENGINES.put("switch", SwitchInterpreter::new);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: lox_benchmark <script>...");
+            System.exit(64);
+        }
+
+        for (String path : args) {
+            byte[] bytes = Files.readAllBytes(Paths.get(path));
+            List<Stmt> statements = new Parser(new Scanner(new String(bytes, Charset.defaultCharset())).scanTokens()).parse();
+            if (Lox.hadError()) System.exit(65);
+
+            for (Map.Entry<String, Supplier<Interpreter>> engine : ENGINES.entrySet()) {
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    run(engine.getValue(), statements);
+                }
+
+                long elapsed = 0;
+                long allocated = 0;
+                Interpreter interpreter = null;
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    long allocatedBefore = allocatedBytes();
+                    long start = System.nanoTime();
+                    interpreter = run(engine.getValue(), statements);
+                    elapsed += System.nanoTime() - start;
+                    allocated += allocatedBytes() - allocatedBefore;
+                }
+
+                System.out.printf("%-30s %-10s %10.2f ms %12.2f MB %s%n", Paths.get(path).getFileName(), engine.getKey(),
+                        elapsed / 1e6 / MEASURED_RUNS, allocated / 1024.0 / 1024.0 / MEASURED_RUNS,
+                        inlineCacheHits(interpreter));
+            }
+        }
+    }
+
+    private static Interpreter run(Supplier<Interpreter> engine, List<Stmt> statements) {
+        Interpreter interpreter = engine.get();
+        new Resolver(interpreter).resolve(statements);
+
+        // We don't want to measure the console, so everything the script prints is discarded.
+        interpreter.useOutput(new Output(Writer.nullWriter()));
+        Lox.interpret(interpreter, statements);
+
+        return interpreter;
+    }
+
+    private static String inlineCacheHits(Interpreter interpreter) {
+        long hits = 0;
+        long misses = 0;
+        int megamorphic = 0;
+        for (InlineCache cache : interpreter.inlineCaches()) {
+            hits += cache.getHits();
+            misses += cache.getMisses();
+            if (cache.isMegamorphic()) megamorphic++;
+        }
+
+        if (hits + misses == 0) return "";
+        return String.format("%6.2f%% ic hits (%d megamorphic sites)", 100.0 * hits / (hits + misses), megamorphic);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
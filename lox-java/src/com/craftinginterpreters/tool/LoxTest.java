@@ -0,0 +1,149 @@
+package com.craftinginterpreters.tool;
+
+import com.craftinginterpreters.lox.Lox;
+import com.craftinginterpreters.lox.ast.Stmt;
+import com.craftinginterpreters.lox.lexer.Scanner;
+import com.craftinginterpreters.lox.parser.Parser;
+import com.craftinginterpreters.lox.runtime.CallStack;
+import com.craftinginterpreters.lox.runtime.Interpreter;
+import com.craftinginterpreters.lox.runtime.Output;
+import com.craftinginterpreters.lox.runtime.Resolver;
+import com.craftinginterpreters.lox.runtime.SwitchInterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Runs Lox scripts (by default the ones in `res/tests`) on every engine, and checks what they print against the
+// expectations written in their comments, as the test suite of the book does:
+//
+//     print 1 + 2; // expect: 3
+//     print nil.x; // expect runtime error: Only instances have properties.
+//
+// Each `expect:` is a line the script prints, in order. A script that expects a runtime error must print the lines
+// before it and then stop with that message.
+public class LoxTest {
+
+    private static final Pattern EXPECTED_OUTPUT = Pattern.compile("// expect: ?(.*)");
+    private static final Pattern EXPECTED_ERROR = Pattern.compile("// expect runtime error: (.+)");
+    private static final Pattern RUNTIME_ERROR = Pattern.compile("\\[line \\d+] RuntimeError: (.+)");
+
+    private static final Map<String, Supplier<Interpreter>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("visitor", Interpreter::new);
+        ENGINES.put("switch", SwitchInterpreter::new);
+        ENGINES.put("deep-recursion", () -> {
+            Interpreter interpreter = new Interpreter();
+            interpreter.useCallStack(new CallStack(CallStack.DEFAULT_BUDGET));
+            return interpreter;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        for (String path : args.length == 0 ? new String[]{"res/tests"} : args) {
+            try (Stream<Path> files = Files.walk(Paths.get(path))) {
+                files.filter(file -> file.toString().endsWith(".lox")).sorted().forEach(scripts::add);
+            }
+        }
+
+        int passed = 0;
+        int failed = 0;
+        for (Path script : scripts) {
+            String source = new String(Files.readAllBytes(script), Charset.defaultCharset());
+            List<String> expectedOutput = new ArrayList<>();
+            String expectedError = null;
+            for (String line : source.split("\\R")) {
+                Matcher error = EXPECTED_ERROR.matcher(line);
+                Matcher output = EXPECTED_OUTPUT.matcher(line);
+                if (error.find()) {
+                    expectedError = error.group(1);
+                } else if (output.find()) {
+                    expectedOutput.add(output.group(1));
+                }
+            }
+
+            // The scripts are meant to be valid, and the front end can't be reset once it reported an error.
+            List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+            if (Lox.hadError()) {
+                System.err.println("Can't run " + script + ".");
+                System.exit(65);
+            }
+
+            for (Map.Entry<String, Supplier<Interpreter>> engine : ENGINES.entrySet()) {
+                String failure = run(engine.getValue(), statements, expectedOutput, expectedError);
+                if (failure == null) {
+                    passed++;
+                } else {
+                    failed++;
+                    System.out.println("FAIL " + script + " (" + engine.getKey() + "): " + failure);
+                }
+            }
+        }
+
+        System.out.println(passed + " passed, " + failed + " failed.");
+        if (failed > 0) System.exit(1);
+    }
+
+    // What went wrong with the run, or null if it went as expected.
+    private static String run(Supplier<Interpreter> engine, List<Stmt> statements, List<String> expectedOutput,
+                              String expectedError) {
+        Interpreter interpreter = engine.get();
+        StringWriter printed = new StringWriter();
+        interpreter.useOutput(new Output(printed));
+
+        // Runtime errors are reported on the standard error, which we read back from a buffer of our own.
+        ByteArrayOutputStream reported = new ByteArrayOutputStream();
+        PrintStream standardError = System.err;
+        System.setErr(new PrintStream(reported, true, StandardCharsets.UTF_8));
+        try {
+            new Resolver(interpreter).resolve(statements);
+            if (!Lox.hadError()) Lox.interpret(interpreter, statements);
+        } finally {
+            System.setErr(standardError);
+        }
+
+        if (Lox.hadError()) {
+            System.err.print(reported.toString(StandardCharsets.UTF_8));
+            System.err.println("Can't run the script.");
+            System.exit(65);
+        }
+
+        List<String> output = printed.toString().isEmpty() ? List.of() : List.of(printed.toString().split("\\R"));
+        for (int i = 0; i < Math.max(output.size(), expectedOutput.size()); i++) {
+            String actual = i < output.size() ? output.get(i) : "<nothing>";
+            String expected = i < expectedOutput.size() ? expectedOutput.get(i) : "<nothing>";
+            if (!actual.equals(expected)) {
+                return "line " + (i + 1) + " of the output is '" + actual + "' instead of '" + expected + "'.";
+            }
+        }
+
+        String error = null;
+        for (String line : reported.toString(StandardCharsets.UTF_8).split("\\R")) {
+            Matcher matcher = RUNTIME_ERROR.matcher(line);
+            if (matcher.matches()) error = matcher.group(1);
+        }
+
+        if (expectedError == null && error != null) return "unexpected runtime error '" + error + "'.";
+        if (expectedError != null && !expectedError.equals(error)) {
+            return "runtime error '" + error + "' instead of '" + expectedError + "'.";
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.craftinginterpreters.lox.runtime;
+
+import java.util.Objects;
+
+// The assertions of the unit checks, which are plain programs since the project has no test framework: each check
+// prints what it found wrong, and the program exits with 1 once it's done if anything was.
+public final class Checks {
+
+    private final String name;
+    private int passed = 0;
+    private int failed = 0;
+
+    public Checks(String name) {
+        this.name = name;
+    }
+
+    public void equal(Object expected, Object actual, String what) {
+        if (Objects.equals(expected, actual)) {
+            passed++;
+        } else {
+            failed++;
+            System.out.println("FAIL " + name + ": " + what + " is '" + actual + "' instead of '" + expected + "'.");
+        }
+    }
+
+    public void check(boolean condition, String what) {
+        if (condition) {
+            passed++;
+        } else {
+            failed++;
+            System.out.println("FAIL " + name + ": " + what + ".");
+        }
+    }
+
+    public void done() {
+        System.out.println(name + ": " + passed + " passed, " + failed + " failed.");
+        if (failed > 0) System.exit(1);
+    }
+}
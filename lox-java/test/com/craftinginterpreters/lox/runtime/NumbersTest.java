@@ -0,0 +1,58 @@
+package com.craftinginterpreters.lox.runtime;
+
+import java.util.Random;
+
+// Checks that numbers are boxed, compared and formatted as the doubles they stand for, and that the fast path of
+// format() writes exactly what Double.toString() would.
+public class NumbersTest {
+
+    public static void main(String[] args) {
+        Checks checks = new Checks("Numbers");
+
+        checks.equal(1L, Numbers.box(1.0), "box(1.0)");
+        checks.check(Numbers.box(7.0) == Numbers.box(7.0), "small whole numbers share their box");
+        checks.equal(1.5, Numbers.box(1.5), "box(1.5)");
+        checks.check(Numbers.box(-0.0) instanceof Double, "-0 stays a double");
+        checks.equal(9007199254740992L, Numbers.box(0x1p53), "box(2^53)");
+        checks.check(Numbers.box(0x1p54) instanceof Double, "whole numbers past 2^53 stay doubles");
+
+        checks.check(Numbers.isEqual(1L, 1.0), "1 == 1.0");
+        checks.check(!Numbers.isEqual(0L, -0.0), "0 != -0");
+        checks.check(Numbers.isEqual(Double.NaN, Double.NaN), "NaN == NaN");
+
+        checks.equal("0", Numbers.format(0L), "format(0)");
+        checks.equal("-0", Numbers.format(-0.0), "format(-0)");
+        checks.equal("3", Numbers.format(3.0), "format(3.0)");
+        checks.equal("-12.25", Numbers.format(-12.25), "format(-12.25)");
+        checks.equal("0.1", Numbers.format(0.1), "format(0.1)");
+        checks.equal("0.30000000000000004", Numbers.format(0.1 + 0.2), "format(0.1 + 0.2)");
+        checks.equal("1.0E7", Numbers.format(1e7), "format(1e7)");
+        checks.equal("9999999", Numbers.format(9999999.0), "format(9999999)");
+        checks.equal("0.001", Numbers.format(0.001), "format(0.001)");
+        checks.equal("1.0E-4", Numbers.format(1e-4), "format(1e-4)");
+        checks.equal("NaN", Numbers.format(Double.NaN), "format(NaN)");
+        checks.equal("-Infinity", Numbers.format(Double.NEGATIVE_INFINITY), "format(-Infinity)");
+
+        // Random numbers over the whole range the fast path handles, and a bit beyond it.
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            double magnitude = Math.pow(10, random.nextInt(13) - 5);
+            double value = (random.nextDouble() - 0.5) * magnitude;
+            if (i % 3 == 0) value = Math.rint(value * 1000) / 1000;
+
+            checks.equal(reference(value), Numbers.format(value), "format(" + value + ")");
+
+            StringBuilder text = new StringBuilder("=");
+            Numbers.append(text, value);
+            checks.equal("=" + reference(value), text.toString(), "append(" + value + ")");
+        }
+
+        checks.done();
+    }
+
+    // What format() is specified to write: Double.toString(), without the fractional part of whole numbers.
+    private static String reference(double value) {
+        String text = Double.toString(value);
+        return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+    }
+}
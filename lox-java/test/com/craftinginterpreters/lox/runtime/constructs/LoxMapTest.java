@@ -0,0 +1,72 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.runtime.Checks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Checks the table of LoxMap against a java.util.HashMap, over random puts and removes that grow it, shrink it and
+// leave tombstones behind, with keys of every kind the table normalizes.
+public class LoxMapTest {
+
+    public static void main(String[] args) {
+        Checks checks = new Checks("LoxMap");
+
+        LoxMap map = new LoxMap();
+        Map<Object, Object> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int number = random.nextInt(i < 50_000 ? 2_000 : 200);
+            Object key = randomKey(random, number);
+            Object referenceKey = number < 10 ? null : "k" + number;
+
+            if (random.nextInt(3) == 0) {
+                checks.equal(reference.containsKey(referenceKey), map.remove(key), "remove(" + key + ")");
+                reference.remove(referenceKey);
+            } else {
+                map.put(key, i);
+                reference.put(referenceKey, i);
+            }
+
+            Object probe = randomKey(random, random.nextInt(2_000));
+            Object referenceProbe = probe == null ? null : "k" + probeNumber(probe);
+            checks.equal(reference.get(referenceProbe), map.get(probe), "get(" + probe + ")");
+            checks.equal(reference.containsKey(referenceProbe), map.has(probe), "has(" + probe + ")");
+            checks.equal(reference.size(), map.size(), "the size after " + (i + 1) + " operations");
+        }
+
+        // The keys come back once each, in the same order as their values.
+        LoxArray keys = map.keys();
+        LoxArray values = map.values();
+        Set<Object> seen = new HashSet<>();
+        checks.equal(map.size(), keys.size(), "the number of keys");
+        checks.equal(map.size(), values.size(), "the number of values");
+        for (int i = 0; i < keys.size(); i++) {
+            Object key = keys.get(i);
+            checks.check(seen.add(key), "the key " + key + " comes back once");
+            checks.equal(map.get(key), values.get(i), "the value of the key " + key);
+        }
+
+        int cursored = 0;
+        for (LoxCursor cursor = map.cursor(); cursor.hasNext(); cursor.next()) cursored++;
+        checks.equal(map.size(), cursored, "the number of keys the cursor visits");
+
+        checks.done();
+    }
+
+    // The same key in one of its forms: nil for the smallest numbers, and otherwise a string, a whole number or the
+    // equal double. We only put strings for the numbers that are even, so that numbers and strings don't collide.
+    private static Object randomKey(Random random, int number) {
+        if (number < 10) return null;
+        if (number % 2 == 0) return "k" + number;
+        return random.nextBoolean() ? (Object) (long) number : (Object) (double) number;
+    }
+
+    private static int probeNumber(Object probe) {
+        if (probe instanceof String string) return Integer.parseInt(string.substring(1));
+        return ((Number) probe).intValue();
+    }
+}
@@ -0,0 +1,130 @@
+package com.craftinginterpreters.lox.runtime.constructs;
+
+import com.craftinginterpreters.lox.runtime.Checks;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+// Checks that a store keeps its entries across a close and a reopen, through the growth of its index and values that
+// change size, and that it fails with a Lox error on a file that was opened twice or damaged, rather than misbehaving.
+public class LoxStoreTest {
+
+    private static final int ENTRIES = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        Checks checks = new Checks("LoxStore");
+        Path directory = Files.createTempDirectory("lox-store");
+        Path path = directory.resolve("store.db");
+
+        LoxStore store = LoxStore.open(path);
+        for (int i = 0; i < ENTRIES; i++) store.put("key" + i, (long) i);
+        // Values of the same type and size are written in place, the other ones in a new record.
+        for (int i = 0; i < ENTRIES; i += 3) store.put("key" + i, (long) -i);
+        for (int i = 1; i < ENTRIES; i += 3) store.put("key" + i, "value" + i);
+        store.put(1L, "one");
+        store.put(2.5, 2.5);
+        checkEntries(checks, store, "before the store is closed");
+
+        checks.equal("Store '" + path + "' is already open.", failure(() -> LoxStore.open(path)), "opening it twice");
+        store.close();
+        checks.equal("Can't use a closed store.", failure(() -> store.get("key0")), "reading a closed store");
+
+        LoxStore reopened = LoxStore.open(path);
+        checkEntries(checks, reopened, "after the store is reopened");
+        Set<Object> keys = new HashSet<>();
+        for (LoxCursor cursor = reopened.cursor(); cursor.hasNext(); ) keys.add(cursor.next());
+        checks.equal(ENTRIES + 2, keys.size(), "the number of keys the cursor visits");
+        checks.check(keys.contains("key123") && keys.contains(1L) && keys.contains(2.5), "the cursor visits every key");
+        reopened.close();
+
+        // Damaged copies of the store.
+        checkCorrupt(checks, directory, path, "a file that isn't a store", file -> {
+            file.seek(0);
+            file.writeLong(0x1234);
+        }, "'%s' is not a store.");
+        checkCorrupt(checks, directory, path, "data that ends past the file", file -> {
+            file.seek(40);
+            file.writeLong(file.length() + 1);
+        }, "Store '%s' is corrupt.");
+        checkCorrupt(checks, directory, path, "an index that is full", file -> {
+            long index = readLong(file, 16);
+            long capacity = readLong(file, 24);
+            for (long slot = 0; slot < capacity; slot++) {
+                file.seek(index + slot * 16);
+                file.writeLong(Long.MAX_VALUE);
+                file.writeInt(-1);
+            }
+        }, "Store '%s' is corrupt.");
+        checkCorrupt(checks, directory, path, "records that lie past the data", file -> {
+            long index = readLong(file, 16);
+            long capacity = readLong(file, 24);
+            long end = readLong(file, 40);
+            for (long slot = 0; slot < capacity; slot++) {
+                if (readLong(file, index + slot * 16) == 0) continue;
+                file.seek(index + slot * 16);
+                file.writeLong(end - 4);
+            }
+        }, "Store '%s' is corrupt.");
+
+        Files.delete(path);
+        Files.delete(directory);
+        checks.done();
+    }
+
+    private static void checkEntries(Checks checks, LoxStore store, String when) {
+        checks.equal((long) ENTRIES + 2, store.size(), "the size " + when);
+        for (int i = 0; i < ENTRIES; i++) {
+            Object expected = i % 3 == 0 ? (Object) (long) -i : i % 3 == 1 ? "value" + i : (Object) (long) i;
+            checks.equal(expected, store.get("key" + i), "the value of key" + i + " " + when);
+        }
+        checks.equal("one", store.get(1.0), "the value of 1 " + when);
+        checks.equal(2.5, store.get(2.5), "the value of 2.5 " + when);
+        checks.equal(null, store.get("missing"), "the value of a missing key " + when);
+    }
+
+    // Damages a copy of the store, and checks that opening it, or reading and walking through it, fails as expected.
+    private static void checkCorrupt(Checks checks, Path directory, Path original, String what, Damage damage,
+                                     String expected) throws IOException {
+        Path path = directory.resolve("damaged.db");
+        Files.copy(original, path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            damage.apply(file);
+        }
+
+        String failure = failure(() -> {
+            LoxStore store = LoxStore.open(path);
+            try {
+                for (int i = 0; i < ENTRIES; i++) store.get("key" + i);
+                for (LoxCursor cursor = store.cursor(); cursor.hasNext(); ) cursor.next();
+            } finally {
+                store.close();
+            }
+        });
+        checks.equal(String.format(expected, path), failure, "opening " + what);
+
+        Files.delete(path);
+    }
+
+    private static long readLong(RandomAccessFile file, long offset) throws IOException {
+        file.seek(offset);
+        return file.readLong();
+    }
+
+    // The message of the failure the action ends with, or null if it doesn't fail.
+    private static String failure(Runnable action) {
+        try {
+            action.run();
+            return null;
+        } catch (NativeFunction.Failure failure) {
+            return failure.getMessage();
+        }
+    }
+
+    private interface Damage {
+        void apply(RandomAccessFile file) throws IOException;
+    }
+}